@@ -0,0 +1,304 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import java.util.Random;
+import java.util.function.BinaryOperator;
+
+/**
+ * A treap map from keys to values in which every node also caches the
+ * aggregate of the values in its subtree, so that rangeAggregate can
+ * combine the values of any key range in expected O(log n).
+ *
+ * The aggregate is given by an identity and an associative combiner, as
+ * for Stream.reduce: for example 0L and Long::sum for sums, or
+ * Integer.MAX_VALUE and Math::min for minimums. The combiner need not be
+ * commutative; values are always combined in ascending key order.
+ *
+ * A node's aggregate depends only on its own value and its children's
+ * aggregates, so it is recomputed bottom-up wherever the shape of the tree
+ * changes: in rotateLL and rotateRR, and along the path above an insertion,
+ * a new value or a removal.
+ */
+public class AggregateTreap<K extends Comparable<K>, V> {
+    static final Random random = new Random();
+
+    static final class Node<K, V> {
+        final K key;
+        V value;
+        V aggregate;
+        final double priority = random.nextDouble();
+        Node<K, V> left;
+        Node<K, V> right;
+        Node<K, V> parent;
+
+        Node(K key, V value, Node<K, V> parent) {
+            this.key = key;
+            this.value = value;
+            this.aggregate = value;
+            this.parent = parent;
+        }
+    }
+
+    final V identity;
+    final BinaryOperator<V> combiner;
+    Node<K, V> root;
+    int size;
+
+    /**
+     * @param identity the aggregate of no values
+     * @param combiner an associative function combining two aggregates
+     */
+    public AggregateTreap(V identity, BinaryOperator<V> combiner) {
+        this.identity = identity;
+        this.combiner = combiner;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private V aggregate(Node<K, V> n) {
+        return n == null ? identity : n.aggregate;
+    }
+
+    /**
+     * Recompute n's aggregate from its value and its children's aggregates.
+     */
+    private void update(Node<K, V> n) {
+        V a = n.value;
+        if (n.left != null) {
+            a = combiner.apply(n.left.aggregate, a);
+        }
+        if (n.right != null) {
+            a = combiner.apply(a, n.right.aggregate);
+        }
+        n.aggregate = a;
+    }
+
+    private void updatePath(Node<K, V> n) {
+        for (; n != null; n = n.parent) {
+            update(n);
+        }
+    }
+
+    private Node<K, V> find(K key) {
+        Node<K, V> n = root;
+        while (n != null) {
+            int c = key.compareTo(n.key);
+            if (c == 0) {
+                return n;
+            }
+            n = c < 0 ? n.left : n.right;
+        }
+        return null;
+    }
+
+    public boolean containsKey(K key) {
+        return find(key) != null;
+    }
+
+    /**
+     * @param key
+     * @return the value of key, or null if it is not present
+     */
+    public V get(K key) {
+        Node<K, V> n = find(key);
+        return n == null ? null : n.value;
+    }
+
+    /**
+     * Set the value of key, adding the key if it is not already present.
+     * @param key
+     * @param value
+     * @return the previous value of key, or null if it was not present
+     */
+    public V put(K key, V value) {
+        if (root == null) {
+            root = new Node<>(key, value, null);
+            size = 1;
+            return null;
+        }
+        Node<K, V> n = root;
+        while (true) {
+            int c = key.compareTo(n.key);
+            if (c == 0) {
+                V old = n.value;
+                n.value = value;
+                updatePath(n);
+                return old;
+            }
+            Node<K, V> next = c < 0 ? n.left : n.right;
+            if (next == null) {
+                Node<K, V> m = new Node<>(key, value, n);
+                if (c < 0) {
+                    n.left = m;
+                } else {
+                    n.right = m;
+                }
+                while (m.parent != null && m.priority > m.parent.priority) {
+                    if (m == m.parent.left) {
+                        rotateLL(m.parent);
+                    } else {
+                        rotateRR(m.parent);
+                    }
+                }
+                // the rotations fixed the aggregates below m; those above it
+                // are missing the new value
+                updatePath(m.parent);
+                size++;
+                return null;
+            }
+            n = next;
+        }
+    }
+
+    /**
+     * Remove key and its value, if it is present.
+     * @param key
+     * @return the value of key, or null if it was not present
+     */
+    public V remove(K key) {
+        Node<K, V> n = find(key);
+        if (n == null) {
+            return null;
+        }
+        while (n.left != null && n.right != null) {
+            if (n.left.priority > n.right.priority) {
+                rotateLL(n);
+            } else {
+                rotateRR(n);
+            }
+        }
+        Node<K, V> child = n.left != null ? n.left : n.right;
+        Node<K, V> p = n.parent;
+        if (child != null) {
+            child.parent = p;
+        }
+        if (p == null) {
+            root = child;
+        } else if (p.left == n) {
+            p.left = child;
+        } else {
+            p.right = child;
+        }
+        updatePath(p);
+        size--;
+        return n.value;
+    }
+
+    /**
+     * @return the aggregate of every value
+     */
+    public V aggregate() {
+        return aggregate(root);
+    }
+
+    /**
+     * Return the aggregate of the values of the keys k with lo <= k < hi, in
+     * key order. Expected O(log n): the search paths for lo and hi are
+     * walked once each, taking whole subtrees' aggregates between them.
+     * @param lo the lower bound (inclusive)
+     * @param hi the upper bound (exclusive)
+     * @return the aggregate of the values in [lo, hi)
+     */
+    public V rangeAggregate(K lo, K hi) {
+        if (lo.compareTo(hi) >= 0) {
+            return identity;
+        }
+        // find the highest node in the range, where the two paths part
+        Node<K, V> n = root;
+        while (n != null && (n.key.compareTo(lo) < 0 || n.key.compareTo(hi) >= 0)) {
+            n = n.key.compareTo(lo) < 0 ? n.right : n.left;
+        }
+        if (n == null) {
+            return identity;
+        }
+        V a = combiner.apply(atLeast(n.left, lo), n.value);
+        return combiner.apply(a, lessThan(n.right, hi));
+    }
+
+    /**
+     * @return the aggregate of the values in t's subtree with keys >= lo
+     */
+    private V atLeast(Node<K, V> t, K lo) {
+        V a = identity;
+        while (t != null) {
+            if (t.key.compareTo(lo) >= 0) {
+                // t and its right subtree are in, and precede what we have
+                a = combiner.apply(combiner.apply(t.value, aggregate(t.right)), a);
+                t = t.left;
+            } else {
+                t = t.right;
+            }
+        }
+        return a;
+    }
+
+    /**
+     * @return the aggregate of the values in t's subtree with keys < hi
+     */
+    private V lessThan(Node<K, V> t, K hi) {
+        V a = identity;
+        while (t != null) {
+            if (t.key.compareTo(hi) < 0) {
+                a = combiner.apply(a, combiner.apply(aggregate(t.left), t.value));
+                t = t.right;
+            } else {
+                t = t.left;
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Perform an LL rotation around n, lifting its left child.
+     * @param n
+     */
+    private void rotateLL(Node<K, V> n) {
+        Node<K, V> a = n.left;
+        Node<K, V> p = n.parent;
+        n.left = a.right;
+        if (a.right != null) {
+            a.right.parent = n;
+        }
+        a.right = n;
+        n.parent = a;
+        a.parent = p;
+        replaceChild(p, n, a);
+        // n is now below a, so its aggregate must be fixed first
+        update(n);
+        update(a);
+    }
+
+    /**
+     * Perform an RR rotation around n, lifting its right child.
+     * @param n
+     */
+    private void rotateRR(Node<K, V> n) {
+        Node<K, V> a = n.right;
+        Node<K, V> p = n.parent;
+        n.right = a.left;
+        if (a.left != null) {
+            a.left.parent = n;
+        }
+        a.left = n;
+        n.parent = a;
+        a.parent = p;
+        replaceChild(p, n, a);
+        update(n);
+        update(a);
+    }
+
+    private void replaceChild(Node<K, V> p, Node<K, V> old, Node<K, V> n) {
+        if (p == null) {
+            root = n;
+        } else if (p.left == old) {
+            p.left = n;
+        } else {
+            p.right = n;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+
+public class AggregateTreapTest {
+
+   private static <V> boolean isValid(AggregateTreap<Integer, V> t, AggregateTreap.Node<Integer, V> n) {
+      if (n == null) {
+         return true;
+      }
+      if ((n.left != null && (n.left.parent != n || n.left.key >= n.key || n.left.priority > n.priority))
+            || (n.right != null && (n.right.parent != n || n.right.key <= n.key || n.right.priority > n.priority))) {
+         return false;
+      }
+      V a = t.combiner.apply(n.left == null ? t.identity : n.left.aggregate, n.value);
+      a = t.combiner.apply(a, n.right == null ? t.identity : n.right.aggregate);
+      return a.equals(n.aggregate) && isValid(t, n.left) && isValid(t, n.right);
+   }
+
+   @Test
+   public void testSums100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         AggregateTreap<Integer, Long> t = new AggregateTreap<>(0L, Long::sum);
+         TreeMap<Integer, Long> expected = new TreeMap<>();
+         for (int i = 0; i < 300; i++) {
+            int k = r.nextInt(200);
+            if (r.nextInt(4) == 0) {
+               assertEquals(expected.remove(k), t.remove(k));
+            } else {
+               long v = r.nextInt(1000);
+               assertEquals(expected.put(k, v), t.put(k, v));
+            }
+         }
+         assertTrue(isValid(t, t.root));
+         assertEquals(expected.size(), t.size());
+         for (int i = 0; i < 50; i++) {
+            int lo = r.nextInt(220) - 10;
+            int hi = r.nextInt(220) - 10;
+            long sum = 0;
+            if (lo < hi) {
+               for (long v : expected.subMap(lo, hi).values()) {
+                  sum += v;
+               }
+            }
+            assertEquals(sum, (long) t.rangeAggregate(lo, hi));
+         }
+      }
+   }
+
+   @Test
+   public void testMinimum() throws Exception {
+      AggregateTreap<Integer, Integer> t = new AggregateTreap<>(Integer.MAX_VALUE, Math::min);
+      for (int k = 0; k < 100; k++) {
+         t.put(k, Math.abs(k - 60));
+      }
+      assertEquals(0, (int) t.aggregate());
+      assertEquals(0, (int) t.rangeAggregate(50, 70));
+      assertEquals(10, (int) t.rangeAggregate(0, 51));
+      assertEquals(Integer.MAX_VALUE, (int) t.rangeAggregate(200, 300));
+      t.put(60, 100);
+      assertEquals(1, (int) t.rangeAggregate(50, 70));
+   }
+
+   @Test
+   public void testOrderIsKept100Randomized() throws Exception {
+      // concatenation is associative but not commutative
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         AggregateTreap<Integer, String> t = new AggregateTreap<>("", String::concat);
+         TreeMap<Integer, String> expected = new TreeMap<>();
+         for (int i = 0; i < 100; i++) {
+            int k = r.nextInt(100);
+            String v = Character.toString((char) ('a' + r.nextInt(26)));
+            t.put(k, v);
+            expected.put(k, v);
+            if (r.nextInt(5) == 0) {
+               int x = r.nextInt(100);
+               t.remove(x);
+               expected.remove(x);
+            }
+         }
+         assertTrue(isValid(t, t.root));
+         for (int i = 0; i < 20; i++) {
+            int lo = r.nextInt(100);
+            int hi = lo + r.nextInt(100 - lo + 1);
+            StringBuilder s = new StringBuilder();
+            for (Map.Entry<Integer, String> e : expected.subMap(lo, hi).entrySet()) {
+               s.append(e.getValue());
+            }
+            assertEquals(s.toString(), t.rangeAggregate(lo, hi));
+         }
+      }
+   }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A treap that many threads can read and update at once, with a lock on
+ * every node.
+ *
+ * Every operation walks down from the root with hand-over-hand locking: it
+ * locks a child before releasing the parent, so holding a node's lock keeps
+ * everyone else out of its subtree. Readers take shared locks and pass each
+ * other freely; writers take exclusive ones.
+ *
+ * Rotations would need to lock upward, against the direction everyone else
+ * locks, so updates avoid them and restructure top-down instead:
+ *
+ * - add walks down to where its priority puts the new node, then splits the
+ *   subtree it replaces around the new key, in place, into the new node's
+ *   children;
+ * - remove walks down to the node, then joins its two subtrees in its place.
+ *
+ * Either way the walk only locks nodes below the ones it already holds, so
+ * there is no deadlock, and an operation already further down the tree is
+ * never overtaken. It is safe for the subtrees below to be reshaped behind
+ * such an operation: it only ever moves down, and the key range it is
+ * searching is still covered by the subtree it is in.
+ *
+ * Null elements are not permitted.
+ */
+public class ConcurrentTreap<E extends Comparable<E>> {
+
+    static final class Node<E> extends StampedLock {
+        private static final long serialVersionUID = 1L;
+
+        final E data;
+        final double priority;
+        Node<E> left;
+        Node<E> right;
+
+        Node(E data, double priority) {
+            this.data = data;
+            this.priority = priority;
+        }
+
+        void lockShared() {
+            readLock();
+        }
+
+        void unlockShared() {
+            tryUnlockRead();
+        }
+
+        void lock() {
+            writeLock();
+        }
+
+        void unlock() {
+            tryUnlockWrite();
+        }
+
+        Node<E> child(boolean goLeft) {
+            return goLeft ? left : right;
+        }
+
+        void setChild(boolean goLeft, Node<E> n) {
+            if (goLeft) {
+                left = n;
+            } else {
+                right = n;
+            }
+        }
+    }
+
+    // a sentinel above the root, which is its left child, so that the root
+    // can be replaced under a lock like any other child
+    final Node<E> head = new Node<>(null, Double.POSITIVE_INFINITY);
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * @return the number of elements; only an estimate while updates are
+     * in progress
+     */
+    public int size() {
+        return size.intValue();
+    }
+
+    public boolean isEmpty() {
+        head.lockShared();
+        try {
+            return head.left == null;
+        } finally {
+            head.unlockShared();
+        }
+    }
+
+    public boolean contains(E e) {
+        Node<E> p = head;
+        p.lockShared();
+        Node<E> c = p.left;
+        while (c != null) {
+            c.lockShared();
+            p.unlockShared();
+            int cmp = e.compareTo(c.data);
+            if (cmp == 0) {
+                c.unlockShared();
+                return true;
+            }
+            p = c;
+            c = cmp < 0 ? c.left : c.right;
+        }
+        p.unlockShared();
+        return false;
+    }
+
+    /**
+     * Add e to the treap, if it is not already present.
+     * @param e
+     * @return true iff e was added
+     */
+    public boolean add(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        Node<E> x = new Node<>(e, ThreadLocalRandom.current().nextDouble());
+
+        // find where x's priority puts it, holding its parent and the node
+        // it will replace
+        Node<E> p = head;
+        p.lock();
+        boolean side = true;
+        Node<E> c = p.left;
+        if (c != null) {
+            c.lock();
+        }
+        while (c != null && c.priority > x.priority) {
+            int cmp = e.compareTo(c.data);
+            if (cmp == 0) {
+                c.unlock();
+                p.unlock();
+                return false;
+            }
+            p.unlock();
+            p = c;
+            side = cmp < 0;
+            c = c.child(side);
+            if (c != null) {
+                c.lock();
+            }
+        }
+
+        if (c != null && containsBelow(c, e)) {
+            c.unlock();
+            p.unlock();
+            return false;
+        }
+
+        // split c's subtree around e: nodes less than e go down x's left
+        // side, along the right edges of the nodes already there, and nodes
+        // greater go down its right side; each hook stays locked until its
+        // child link is final
+        x.lock();
+        p.setChild(side, x);
+        Node<E> lHook = x;
+        boolean lSide = true;
+        Node<E> rHook = x;
+        boolean rSide = false;
+        Node<E> n = c;
+        while (n != null) {
+            Node<E> next;
+            if (n.data.compareTo(e) < 0) {
+                lHook.setChild(lSide, n);
+                if (lHook != x) {
+                    lHook.unlock();
+                }
+                lHook = n;
+                lSide = false;
+                next = n.right;
+            } else {
+                rHook.setChild(rSide, n);
+                if (rHook != x) {
+                    rHook.unlock();
+                }
+                rHook = n;
+                rSide = true;
+                next = n.left;
+            }
+            if (next != null) {
+                next.lock();
+            }
+            n = next;
+        }
+        lHook.setChild(lSide, null);
+        rHook.setChild(rSide, null);
+        if (lHook != x) {
+            lHook.unlock();
+        }
+        if (rHook != x) {
+            rHook.unlock();
+        }
+        x.unlock();
+        p.unlock();
+        size.increment();
+        return true;
+    }
+
+    /**
+     * Search for e below c, which the caller has locked, without releasing c.
+     */
+    private boolean containsBelow(Node<E> c, E e) {
+        int cmp = e.compareTo(c.data);
+        if (cmp == 0) {
+            return true;
+        }
+        Node<E> p = null;
+        Node<E> n = cmp < 0 ? c.left : c.right;
+        while (n != null) {
+            n.lockShared();
+            if (p != null) {
+                p.unlockShared();
+            }
+            cmp = e.compareTo(n.data);
+            if (cmp == 0) {
+                n.unlockShared();
+                return true;
+            }
+            p = n;
+            n = cmp < 0 ? n.left : n.right;
+        }
+        if (p != null) {
+            p.unlockShared();
+        }
+        return false;
+    }
+
+    /**
+     * Remove e from the treap, if it is present.
+     * @param e
+     * @return true iff e was removed
+     */
+    public boolean remove(E e) {
+        Node<E> p = head;
+        p.lock();
+        boolean side = true;
+        Node<E> c = p.left;
+        while (c != null) {
+            c.lock();
+            int cmp = e.compareTo(c.data);
+            if (cmp == 0) {
+                break;
+            }
+            p.unlock();
+            p = c;
+            side = cmp < 0;
+            c = c.child(side);
+        }
+        if (c == null) {
+            p.unlock();
+            return false;
+        }
+
+        // join c's subtrees into its place: whichever head has the higher
+        // priority is linked in, and the join continues down its inner edge
+        Node<E> a = c.left;
+        Node<E> b = c.right;
+        if (a != null) {
+            a.lock();
+        }
+        if (b != null) {
+            b.lock();
+        }
+        Node<E> hook = p;
+        boolean hookSide = side;
+        while (a != null && b != null) {
+            Node<E> next;
+            if (a.priority > b.priority) {
+                hook.setChild(hookSide, a);
+                if (hook != p) {
+                    hook.unlock();
+                }
+                hook = a;
+                hookSide = false;
+                a = next = a.right;
+            } else {
+                hook.setChild(hookSide, b);
+                if (hook != p) {
+                    hook.unlock();
+                }
+                hook = b;
+                hookSide = true;
+                b = next = b.left;
+            }
+            if (next != null) {
+                next.lock();
+            }
+        }
+        Node<E> rest = a != null ? a : b;
+        hook.setChild(hookSide, rest);
+        if (rest != null) {
+            rest.unlock();
+        }
+        if (hook != p) {
+            hook.unlock();
+        }
+        c.unlock();
+        p.unlock();
+        size.decrement();
+        return true;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of ConcurrentTreap against ConcurrentSkipListMap,
+ * and against PersistentTreap, from 1 to 64 threads, on a random mix of
+ * contains, add and remove over a fixed key range.
+ *
+ * Usage: ConcurrentTreapBenchmark [millis per run] [key range] [percent reads]
+ */
+public class ConcurrentTreapBenchmark {
+
+    /**
+     * The operations a run performs, so the same loop can drive each set.
+     */
+    interface IntSet {
+        boolean contains(int x);
+
+        boolean add(int x);
+
+        boolean remove(int x);
+    }
+
+    static IntSet concurrentTreap() {
+        ConcurrentTreap<Integer> t = new ConcurrentTreap<>();
+        return new IntSet() {
+            public boolean contains(int x) {
+                return t.contains(x);
+            }
+
+            public boolean add(int x) {
+                return t.add(x);
+            }
+
+            public boolean remove(int x) {
+                return t.remove(x);
+            }
+        };
+    }
+
+    static IntSet skipList() {
+        ConcurrentSkipListMap<Integer, Boolean> m = new ConcurrentSkipListMap<>();
+        return new IntSet() {
+            public boolean contains(int x) {
+                return m.containsKey(x);
+            }
+
+            public boolean add(int x) {
+                return m.putIfAbsent(x, Boolean.TRUE) == null;
+            }
+
+            public boolean remove(int x) {
+                return m.remove(x) != null;
+            }
+        };
+    }
+
+    static IntSet persistentTreap() {
+        PersistentTreap<Integer> t = new PersistentTreap<>();
+        return new IntSet() {
+            public boolean contains(int x) {
+                return t.contains(x);
+            }
+
+            public boolean add(int x) {
+                return t.add(x);
+            }
+
+            public boolean remove(int x) {
+                return t.remove(x);
+            }
+        };
+    }
+
+    /**
+     * Fill s with half the key range, then have each thread perform random
+     * operations for the given time; adds and removes are equally likely, so
+     * the set stays about half full.
+     * @return the total operations per second across all threads
+     */
+    static double throughput(IntSet s, int threads, int keys, int readPercent, long millis)
+            throws InterruptedException {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        for (int i = 0; i < keys / 2; i++) {
+            s.add(r.nextInt(keys));
+        }
+        AtomicLong ops = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom tr = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long n = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    for (int i = 0; i < 64; i++) {
+                        int x = tr.nextInt(keys);
+                        int op = tr.nextInt(100);
+                        if (op < readPercent) {
+                            s.contains(x);
+                        } else if ((op & 1) == 0) {
+                            s.add(x);
+                        } else {
+                            s.remove(x);
+                        }
+                    }
+                    n += 64;
+                }
+                ops.addAndGet(n);
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + millis * 1_000_000;
+        start.countDown();
+        for (Thread w : workers) {
+            w.join();
+        }
+        return ops.get() / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        int keys = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int readPercent = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        System.out.println(String.format("%d keys, %d%% reads, %d cores", keys, readPercent,
+                Runtime.getRuntime().availableProcessors()));
+        System.out.println(String.format("%8s %14s %14s %14s",
+                "threads", "treap ops/s", "skiplist ops/s", "persist ops/s"));
+        for (int p = 1; p <= 64; p *= 2) {
+            double treap = throughput(concurrentTreap(), p, keys, readPercent, millis);
+            double skip = throughput(skipList(), p, keys, readPercent, millis);
+            double persistent = throughput(persistentTreap(), p, keys, readPercent, millis);
+            System.out.println(String.format("%8d %14.0f %14.0f %14.0f", p, treap, skip, persistent));
+        }
+    }
+}
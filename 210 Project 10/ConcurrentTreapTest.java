@@ -0,0 +1,154 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+
+public class ConcurrentTreapTest {
+
+   private static boolean isValid(ConcurrentTreap.Node<Integer> n, Integer lo, Integer hi, double maxPriority) {
+      if (n == null) {
+         return true;
+      }
+      if ((lo != null && n.data <= lo) || (hi != null && n.data >= hi) || n.priority > maxPriority) {
+         return false;
+      }
+      if (n.isReadLocked() || n.isWriteLocked()) {
+         return false;
+      }
+      return isValid(n.left, lo, n.data, n.priority) && isValid(n.right, n.data, hi, n.priority);
+   }
+
+   private static void inOrder(ConcurrentTreap.Node<Integer> n, List<Integer> out) {
+      if (n != null) {
+         inOrder(n.left, out);
+         out.add(n.data);
+         inOrder(n.right, out);
+      }
+   }
+
+   private static void assertValid(ConcurrentTreap<Integer> t, TreeSet<Integer> expected) {
+      assertTrue(isValid(t.head.left, null, null, Double.POSITIVE_INFINITY));
+      assertFalse(t.head.isReadLocked() || t.head.isWriteLocked());
+      List<Integer> actual = new ArrayList<>();
+      inOrder(t.head.left, actual);
+      assertEquals(new ArrayList<>(expected), actual);
+      assertEquals(expected.size(), t.size());
+   }
+
+   @Test
+   public void testSequential100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         ConcurrentTreap<Integer> t = new ConcurrentTreap<>();
+         TreeSet<Integer> expected = new TreeSet<>();
+         for (int i = 0; i < 500; i++) {
+            int x = r.nextInt(200);
+            switch (r.nextInt(3)) {
+            case 0:
+               assertEquals(expected.remove(x), t.remove(x));
+               break;
+            case 1:
+               assertEquals(expected.add(x), t.add(x));
+               break;
+            default:
+               assertEquals(expected.contains(x), t.contains(x));
+            }
+         }
+         assertValid(t, expected);
+      }
+   }
+
+   @Test
+   public void testConcurrentDisjointKeys() throws Exception {
+      final int threads = 8;
+      final int perThread = 10_000;
+      ConcurrentTreap<Integer> t = new ConcurrentTreap<>();
+      AtomicInteger failures = new AtomicInteger();
+      Thread[] workers = new Thread[threads];
+      for (int i = 0; i < threads; i++) {
+         final int id = i;
+         workers[i] = new Thread(() -> {
+            for (int j = 0; j < perThread; j++) {
+               int x = j * threads + id;
+               if (!t.add(x) || !t.contains(x)) {
+                  failures.incrementAndGet();
+               }
+            }
+            for (int j = 0; j < perThread; j += 2) {
+               if (!t.remove(j * threads + id)) {
+                  failures.incrementAndGet();
+               }
+            }
+         });
+         workers[i].start();
+      }
+      for (Thread w : workers) {
+         w.join();
+      }
+      assertEquals(0, failures.get());
+      TreeSet<Integer> expected = new TreeSet<>();
+      for (int i = 0; i < threads * perThread; i++) {
+         if ((i / threads) % 2 == 1) {
+            expected.add(i);
+         }
+      }
+      assertValid(t, expected);
+   }
+
+   @Test
+   public void testConcurrentContendedKeys() throws Exception {
+      // every thread updates the same small range; whatever the interleaving,
+      // each successful add and remove must match a change to the set, as in
+      // a ConcurrentSkipListSet replaying the same outcomes
+      final int threads = 8;
+      ConcurrentTreap<Integer> t = new ConcurrentTreap<>();
+      AtomicInteger[] net = new AtomicInteger[64];
+      for (int i = 0; i < net.length; i++) {
+         net[i] = new AtomicInteger();
+      }
+      Thread[] workers = new Thread[threads];
+      for (int i = 0; i < threads; i++) {
+         workers[i] = new Thread(() -> {
+            ThreadLocalRandom r = ThreadLocalRandom.current();
+            for (int j = 0; j < 50_000; j++) {
+               int x = r.nextInt(net.length);
+               if (r.nextBoolean()) {
+                  if (t.add(x)) {
+                     net[x].incrementAndGet();
+                  }
+               } else if (t.remove(x)) {
+                  net[x].decrementAndGet();
+               }
+            }
+         });
+         workers[i].start();
+      }
+      for (Thread w : workers) {
+         w.join();
+      }
+      ConcurrentSkipListSet<Integer> present = new ConcurrentSkipListSet<>();
+      for (int x = 0; x < net.length; x++) {
+         int n = net[x].get();
+         assertTrue(n == 0 || n == 1);
+         if (n == 1) {
+            present.add(x);
+         }
+         assertEquals(n == 1, t.contains(x));
+      }
+      assertValid(t, new TreeSet<>(present));
+   }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Max-heap operations on a double[] laid out as a d-ary tree, where the
+ * children of index i are d*i+1 through d*i+d.
+ *
+ * These follow the same contract as heapify, siftDown, siftUp and heapSort
+ * in HeapUtilities (which is the d = 2 case). A wider node makes the tree
+ * shallower, and since a node's children sit next to each other in the
+ * array, a 4-ary or 8-ary heap touches fewer cache lines per sift on a
+ * large heap, at the cost of more comparisons per level.
+ */
+public class DAryHeap {
+    final int d;
+
+    /**
+     * @param d the arity of the tree, that is, the number of children per node
+     */
+    public DAryHeap(int d) {
+        if (d < 2) {
+            throw new IllegalArgumentException("arity must be at least 2: " + d);
+        }
+        this.d = d;
+    }
+
+    public int arity() {
+        return d;
+    }
+
+    int parent(int i) {
+        return (i - 1) / d;
+    }
+
+    long firstChild(int i) {
+        return (long) d * i + 1;
+    }
+
+    /**
+     * Returns true iff the first n elements of a form a d-ary max-heap.
+     * @param a an array representing a mostly-complete tree, possibly a heap
+     * @param n the bound on the array (that is, where the heap ends)
+     * @return true iff a[0..n-1] is a max-heap
+     */
+    boolean isHeap(double[] a, int n) {
+        for (int i = 1; i < n; i++) {
+            if (a[i] > a[parent(i)]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Perform the heap siftdown operation on index i of the array a,
+     * bounded by n (exclusive).
+     *
+     * This method assumes the subtrees of i are already valid max-heaps.
+     *
+     * @param a the array being sifted
+     * @param i the index of the element to sift down
+     * @param n the bound on the array (that is, where to stop sifting)
+     */
+    void siftDown(double[] a, int i, int n) {
+        double x = a[i];
+        while (true) {
+            long c = firstChild(i);
+            if (c >= n) {
+                break;
+            }
+            int first = (int) c;
+            int end = (int) Math.min(c + d, n);
+            int largestIndex = first;
+            for (int j = first + 1; j < end; j++) {
+                if (a[j] > a[largestIndex]) {
+                    largestIndex = j;
+                }
+            }
+            if (a[largestIndex] <= x) {
+                break;
+            }
+            a[i] = a[largestIndex];
+            i = largestIndex;
+        }
+        a[i] = x;
+    }
+
+    /**
+     * Perform the heap siftup operation on index i of the array a.
+     *
+     * This method assumes a[0..i-1] is already a valid max-heap.
+     *
+     * @param a the array being sifted
+     * @param i the index of the element to sift up
+     */
+    void siftUp(double[] a, int i) {
+        double x = a[i];
+        while (i > 0) {
+            int p = parent(i);
+            if (a[p] >= x) {
+                break;
+            }
+            a[i] = a[p];
+            i = p;
+        }
+        a[i] = x;
+    }
+
+    /**
+     * Heapify the array a in-place in linear time as a max-heap.
+     * @param a an array of values
+     */
+    public void heapify(double[] a) {
+        heapify(a, a.length);
+    }
+
+    /**
+     * Heapify the first n elements of the array a in-place in linear time,
+     * by sifting down every parent from the last one back to the root.
+     * @param a an array of values
+     * @param n the bound on the array (that is, where the heap ends)
+     */
+    public void heapify(double[] a, int n) {
+        if (n < 2) {
+            return;
+        }
+        for (int i = parent(n - 1); i >= 0; i--) {
+            siftDown(a, i, n);
+        }
+        assert isHeap(a, n) : "heapify did not produce a max-heap";
+    }
+
+    /**
+     * Heapsort the array a in-place, resulting in the elements of
+     * a being in ascending order.
+     * @param a
+     */
+    public void heapSort(double[] a) {
+        heapify(a);
+        for (int i = a.length - 1; i > 0; i--) {
+            HeapUtilities.swap(a, 0, i);
+            siftDown(a, 0, i);
+        }
+    }
+
+    public static void main(String[] args) {
+        Random r = new Random(0);
+        int length = 15;
+        double[] l = new double[length];
+        for (int i = 0; i < length; i++) {
+            l[i] = r.nextInt(20);
+        }
+        System.out.println(Arrays.toString(l));
+
+        DAryHeap h = new DAryHeap(4);
+        h.heapify(l);
+
+        System.out.println(Arrays.toString(l));
+
+        h.heapSort(l);
+
+        System.out.println(Arrays.toString(l));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class DAryHeapTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArityOne() throws Exception {
+        new DAryHeap(1);
+    }
+
+    @Test
+    public void testBinaryMatchesHeapUtilities() throws Exception {
+        double[] a = { 0.0, 1.0, 2.0, 3.0, 4.0, 5.0, 6.0 };
+        double[] t = { 6.0, 4.0, 5.0, 3.0, 1.0, 0.0, 2.0 };
+        new DAryHeap(2).heapify(a);
+        assertArrayEquals(t, a, 0);
+    }
+
+    @Test
+    public void testHeapifyFourAry() throws Exception {
+        double[] a = { 0.0, 1.0, 2.0, 3.0, 4.0, 5.0, 6.0 };
+        double[] t = { 6.0, 5.0, 2.0, 3.0, 4.0, 0.0, 1.0 };
+        new DAryHeap(4).heapify(a);
+        assertArrayEquals(t, a, 0);
+    }
+
+    @Test
+    public void testSiftDownEightAryBounded() throws Exception {
+        double[] a = { 0.0, 1.0, 2.0, 9.0 };
+        double[] t = { 2.0, 1.0, 0.0, 9.0 };
+        new DAryHeap(8).siftDown(a, 0, 3);
+        assertArrayEquals(t, a, 0);
+    }
+
+    @Test
+    public void testHeapSort100Randomized() throws Exception {
+        final int length = 1000;
+        for (int d : new int[] { 2, 3, 4, 8, 16 }) {
+            DAryHeap h = new DAryHeap(d);
+            for (int seed = 0; seed < 100; seed++) {
+                Random r = new Random(seed);
+                double[] a = new double[length + seed];
+                for (int i = 0; i < a.length; i++) {
+                    a[i] = r.nextInt(100);
+                }
+                double[] t = a.clone();
+                Arrays.sort(t);
+
+                h.heapify(a);
+                assertTrue(h.isHeap(a, a.length));
+                h.heapSort(a);
+                assertArrayEquals(t, a, 0);
+            }
+        }
+    }
+}
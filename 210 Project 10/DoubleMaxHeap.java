@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A growable max-priority queue of primitive doubles.
+ *
+ * The queue is a single array kept in max-heap order by the sift operations
+ * in HeapUtilities. Values are never boxed, and no objects are allocated
+ * by any operation other than the occasional array growth in offer.
+ */
+public class DoubleMaxHeap {
+    static final int DEFAULT_CAPACITY = 16;
+
+    double[] a;
+    int size;
+
+    public DoubleMaxHeap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DoubleMaxHeap(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("negative capacity: " + initialCapacity);
+        }
+        a = new double[initialCapacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all values from the queue. The backing array is kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Add the value x to the queue.
+     * @param x
+     */
+    public void offer(double x) {
+        if (size == a.length) {
+            grow(size + 1);
+        }
+        a[size] = x;
+        HeapUtilities.siftUp(a, size);
+        size++;
+    }
+
+    /**
+     * Return, but do not remove, the largest value in the queue.
+     * @return the largest value in the queue
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public double peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return a[0];
+    }
+
+    /**
+     * Remove and return the largest value in the queue.
+     * @return the largest value in the queue
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public double poll() {
+        double top = peek();
+        size--;
+        a[0] = a[size];
+        HeapUtilities.siftDown(a, 0, size);
+        return top;
+    }
+
+    /**
+     * Remove the largest value in the queue and add x in its place.
+     *
+     * This is a single siftDown, rather than the two sifts of a poll
+     * followed by an offer.
+     *
+     * @param x
+     * @return the largest value in the queue before x was added
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public double replaceTop(double x) {
+        double top = peek();
+        a[0] = x;
+        HeapUtilities.siftDown(a, 0, size);
+        return top;
+    }
+
+    /**
+     * Add x to the queue, then remove and return the largest value.
+     *
+     * If x is at least as large as everything in the queue, it is returned
+     * straight away and the queue is untouched.
+     *
+     * @param x
+     * @return the largest value among x and the values in the queue
+     */
+    public double pushPop(double x) {
+        if (size == 0 || x >= a[0]) {
+            return x;
+        }
+        double top = a[0];
+        a[0] = x;
+        HeapUtilities.siftDown(a, 0, size);
+        return top;
+    }
+
+    /**
+     * Grow the backing array, if needed, so it can hold at least
+     * minCapacity values without further growth.
+     * @param minCapacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > a.length) {
+            grow(minCapacity);
+        }
+    }
+
+    /**
+     * Shrink the backing array to exactly the number of values in the queue.
+     */
+    public void trimToSize() {
+        if (a.length > size) {
+            a = Arrays.copyOf(a, size);
+        }
+    }
+
+    /**
+     * Grow the backing array by half its length (or to minCapacity, whichever
+     * is larger), so that a run of offers is amortized O(1) in copying.
+     * @param minCapacity
+     */
+    private void grow(int minCapacity) {
+        a = Arrays.copyOf(a, HeapUtilities.newCapacity(a.length, minCapacity));
+    }
+}
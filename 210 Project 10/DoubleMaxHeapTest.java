@@ -0,0 +1,95 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class DoubleMaxHeapTest {
+
+    @Test
+    public void testOfferPollOne() throws Exception {
+        DoubleMaxHeap h = new DoubleMaxHeap();
+        h.offer(1.0);
+        assertEquals(1, h.size());
+        assertEquals(1.0, h.peek(), 0);
+        assertEquals(1.0, h.poll(), 0);
+        assertTrue(h.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testPollEmpty() throws Exception {
+        new DoubleMaxHeap().poll();
+    }
+
+    @Test
+    public void testGrowFromZero() throws Exception {
+        DoubleMaxHeap h = new DoubleMaxHeap(0);
+        for (int i = 0; i < 100; i++) {
+            h.offer(i);
+        }
+        assertEquals(100, h.size());
+        assertEquals(99.0, h.peek(), 0);
+    }
+
+    @Test
+    public void testReplaceTop() throws Exception {
+        DoubleMaxHeap h = new DoubleMaxHeap();
+        h.offer(3.0);
+        h.offer(2.0);
+        h.offer(1.0);
+        assertEquals(3.0, h.replaceTop(0.0), 0);
+        assertEquals(2.0, h.poll(), 0);
+        assertEquals(1.0, h.poll(), 0);
+        assertEquals(0.0, h.poll(), 0);
+    }
+
+    @Test
+    public void testPushPop() throws Exception {
+        DoubleMaxHeap h = new DoubleMaxHeap();
+        assertEquals(5.0, h.pushPop(5.0), 0);
+        assertTrue(h.isEmpty());
+        h.offer(3.0);
+        assertEquals(4.0, h.pushPop(4.0), 0);
+        assertEquals(3.0, h.pushPop(1.0), 0);
+        assertEquals(1.0, h.peek(), 0);
+    }
+
+    @Test
+    public void testTrimToSize() throws Exception {
+        DoubleMaxHeap h = new DoubleMaxHeap(64);
+        h.offer(2.0);
+        h.offer(1.0);
+        h.trimToSize();
+        assertEquals(2, h.a.length);
+        h.offer(3.0);
+        assertEquals(3.0, h.poll(), 0);
+    }
+
+    @Test
+    public void testPoll100Randomized() throws Exception {
+        final int length = 1000;
+        for (int seed = 0; seed < 100; seed++) {
+            Random r = new Random(seed);
+            DoubleMaxHeap h = new DoubleMaxHeap(1);
+            double[] expected = new double[length];
+            for (int i = 0; i < length; i++) {
+                expected[i] = r.nextInt(100);
+                h.offer(expected[i]);
+            }
+            Arrays.sort(expected);
+            for (int i = length - 1; i >= 0; i--) {
+                assertEquals(expected[i], h.poll(), 0);
+            }
+            assertTrue(h.isEmpty());
+        }
+    }
+}
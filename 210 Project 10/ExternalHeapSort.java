@@ -0,0 +1,324 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sorts a binary file of doubles that may be far larger than memory.
+ *
+ * The input is read through a FileChannel in chunks of chunkLength values;
+ * each chunk is heapsorted in memory and written out to a temporary run
+ * file. The runs are then merged, up to fanIn at a time, by a min-heap
+ * (a MaxHeap with a reversed comparator) of run cursors, each reading its
+ * run through a buffer of bufferBytes. If there are more than fanIn runs,
+ * intermediate merge passes combine them into fewer, longer runs first.
+ *
+ * Peak memory is about 8 * chunkLength bytes while making runs, and about
+ * fanIn * bufferBytes while merging.
+ *
+ * Values are ordered as by Double.compare, and so as by Arrays.sort: -0.0
+ * before 0.0, and NaN after everything else, including positive infinity.
+ * Both phases use that order; the runs are sorted on sortKey, which orders
+ * longs exactly as Double.compare orders doubles, since primitive < has no
+ * place for NaN at all. Every NaN is written out as the canonical NaN.
+ *
+ * Input and output are a plain sequence of 8-byte IEEE 754 doubles, in the
+ * given byte order (big-endian by default, as written by DataOutputStream).
+ */
+public class ExternalHeapSort {
+    int chunkLength = 1 << 24;
+    int bufferBytes = 1 << 16;
+    int fanIn = 64;
+    ByteOrder order = ByteOrder.BIG_ENDIAN;
+    Path tempDir;
+
+    /**
+     * @param chunkLength the number of values sorted in memory at once
+     * @return this
+     */
+    public ExternalHeapSort chunkLength(int chunkLength) {
+        if (chunkLength < 1) {
+            throw new IllegalArgumentException("chunk length must be positive: " + chunkLength);
+        }
+        this.chunkLength = chunkLength;
+        return this;
+    }
+
+    /**
+     * @param bufferBytes the size of each read or write buffer, rounded
+     * up to a whole number of doubles
+     * @return this
+     */
+    public ExternalHeapSort bufferBytes(int bufferBytes) {
+        if (bufferBytes < 1) {
+            throw new IllegalArgumentException("buffer size must be positive: " + bufferBytes);
+        }
+        this.bufferBytes = (bufferBytes + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+        return this;
+    }
+
+    /**
+     * @param fanIn the most runs merged at once
+     * @return this
+     */
+    public ExternalHeapSort fanIn(int fanIn) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("fan-in must be at least 2: " + fanIn);
+        }
+        this.fanIn = fanIn;
+        return this;
+    }
+
+    /**
+     * @param order the byte order of the input and output files
+     * @return this
+     */
+    public ExternalHeapSort order(ByteOrder order) {
+        this.order = order;
+        return this;
+    }
+
+    /**
+     * @param tempDir where to write runs, or null for the system default
+     * @return this
+     */
+    public ExternalHeapSort tempDir(Path tempDir) {
+        this.tempDir = tempDir;
+        return this;
+    }
+
+    /**
+     * Sort the doubles in input into ascending order in output. The two
+     * paths must differ; output is replaced if it exists.
+     * @param input
+     * @param output
+     * @throws IOException if a file cannot be read or written, or if the
+     * length of input is not a multiple of 8 bytes
+     */
+    public void sort(Path input, Path output) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        try {
+            makeRuns(input, runs);
+            while (runs.size() > fanIn) {
+                List<Path> merged = new ArrayList<>();
+                try {
+                    for (int i = 0; i < runs.size(); i += fanIn) {
+                        List<Path> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                        Path run = createRun();
+                        merged.add(run);
+                        merge(group, run, ByteOrder.nativeOrder());
+                    }
+                } finally {
+                    // hand the merged runs to the outer cleanup before
+                    // deleting the old ones, in case deleting fails
+                    List<Path> old = runs;
+                    runs = merged;
+                    deleteAll(old);
+                }
+            }
+            merge(runs, output, order);
+        } finally {
+            deleteAll(runs);
+        }
+    }
+
+    private Path createRun() throws IOException {
+        return tempDir == null
+                ? Files.createTempFile("run", ".bin")
+                : Files.createTempFile(tempDir, "run", ".bin");
+    }
+
+    private static void deleteAll(List<Path> paths) throws IOException {
+        for (Path p : paths) {
+            Files.deleteIfExists(p);
+        }
+    }
+
+    /**
+     * Map x to a long such that comparing the longs with < agrees with
+     * Double.compare on the doubles. Flipping all but the sign bit of a
+     * negative double's bits reverses the order of the negatives, leaving
+     * -0.0 just below 0.0; doubleToLongBits collapses every NaN into the
+     * canonical one, above positive infinity.
+     */
+    static long sortKey(double x) {
+        long bits = Double.doubleToLongBits(x);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    static double fromSortKey(long key) {
+        return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+    }
+
+    /**
+     * Split input into sorted runs of at most chunkLength values, adding
+     * each run's file to runs as it is written.
+     */
+    private void makeRuns(Path input, List<Path> runs) throws IOException {
+        long[] chunk = new long[chunkLength];
+        try (DoubleReader in = new DoubleReader(input, bufferBytes, order)) {
+            while (in.hasNext()) {
+                int n = 0;
+                while (n < chunkLength && in.hasNext()) {
+                    chunk[n++] = sortKey(in.next());
+                }
+                HeapUtilities.heapSort(chunk, 0, n);
+                Path run = createRun();
+                runs.add(run);
+                // runs never leave this machine, so keep them in native order
+                try (DoubleWriter out = new DoubleWriter(run, bufferBytes, ByteOrder.nativeOrder())) {
+                    for (int i = 0; i < n; i++) {
+                        out.write(fromSortKey(chunk[i]));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * k-way merge of the sorted runs into output.
+     */
+    private void merge(List<Path> runs, Path output, ByteOrder outputOrder) throws IOException {
+        // a reversed comparator turns the max-heap into a min-heap on heads
+        MaxHeap<DoubleReader> heads = new MaxHeap<>(runs.size(), (x, y) -> Double.compare(y.head, x.head));
+        try (DoubleWriter out = new DoubleWriter(output, bufferBytes, outputOrder)) {
+            for (Path run : runs) {
+                DoubleReader in = new DoubleReader(run, bufferBytes, ByteOrder.nativeOrder());
+                // in is not in heads until it has a head, so until then it
+                // must be closed here if anything goes wrong
+                boolean added = false;
+                try {
+                    if (in.advance()) {
+                        heads.offer(in);
+                        added = true;
+                    }
+                } finally {
+                    if (!added) {
+                        in.close();
+                    }
+                }
+            }
+            while (!heads.isEmpty()) {
+                DoubleReader in = heads.peek();
+                out.write(in.head);
+                if (in.advance()) {
+                    // the cursor's head has grown; sift it back into place
+                    heads.replaceTop(in);
+                } else {
+                    heads.poll().close();
+                }
+            }
+        } finally {
+            while (!heads.isEmpty()) {
+                heads.poll().close();
+            }
+        }
+    }
+
+    /**
+     * A buffered sequential reader of doubles from a file, which also serves
+     * as a run cursor during merging (see advance and head).
+     */
+    static class DoubleReader implements Closeable {
+        final Path path;
+        final FileChannel channel;
+        final ByteBuffer buffer;
+        double head;
+
+        DoubleReader(Path path, int bufferBytes, ByteOrder order) throws IOException {
+            this.path = path;
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            buffer = ByteBuffer.allocateDirect(bufferBytes).order(order);
+            buffer.flip();
+        }
+
+        boolean hasNext() throws IOException {
+            if (buffer.remaining() >= Double.BYTES) {
+                return true;
+            }
+            buffer.compact();
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            buffer.flip();
+            if (buffer.remaining() >= Double.BYTES) {
+                return true;
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("length is not a whole number of doubles: " + path);
+            }
+            return false;
+        }
+
+        double next() {
+            return buffer.getDouble();
+        }
+
+        /**
+         * Move head to the next value.
+         * @return false if there is no next value
+         */
+        boolean advance() throws IOException {
+            if (!hasNext()) {
+                return false;
+            }
+            head = next();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * A buffered sequential writer of doubles to a file.
+     */
+    static class DoubleWriter implements Closeable {
+        final FileChannel channel;
+        final ByteBuffer buffer;
+
+        DoubleWriter(Path path, int bufferBytes, ByteOrder order) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer = ByteBuffer.allocateDirect(bufferBytes).order(order);
+        }
+
+        void write(double x) throws IOException {
+            if (buffer.remaining() < Double.BYTES) {
+                flush();
+            }
+            buffer.putDouble(x);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class ExternalHeapSortTest {
+
+    private static void write(Path p, double[] a, ByteOrder order) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(a.length * Double.BYTES).order(order);
+        b.asDoubleBuffer().put(a);
+        Files.write(p, b.array());
+    }
+
+    private static double[] read(Path p, ByteOrder order) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(p)).order(order);
+        double[] a = new double[b.remaining() / Double.BYTES];
+        b.asDoubleBuffer().get(a);
+        return a;
+    }
+
+    private static void check(ExternalHeapSort s, double[] a, ByteOrder order) throws IOException {
+        Path in = Files.createTempFile("in", ".bin");
+        Path out = Files.createTempFile("out", ".bin");
+        try {
+            write(in, a, order);
+            s.sort(in, out);
+            double[] t = a.clone();
+            Arrays.sort(t);
+            assertArrayEquals(t, read(out, order), 0);
+        } finally {
+            Files.deleteIfExists(in);
+            Files.deleteIfExists(out);
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        check(new ExternalHeapSort(), new double[0], ByteOrder.BIG_ENDIAN);
+    }
+
+    @Test
+    public void testSingleRun() throws Exception {
+        check(new ExternalHeapSort(), new double[] { 3.0, 1.0, 2.0 }, ByteOrder.BIG_ENDIAN);
+    }
+
+    @Test
+    public void testMultiPassMerge10Randomized() throws Exception {
+        for (int seed = 0; seed < 10; seed++) {
+            Random r = new Random(seed);
+            double[] a = new double[1000 + r.nextInt(1000)];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = r.nextInt(500);
+            }
+            // 10-30 runs of 100, merged 3 at a time, through 24-byte buffers
+            ByteOrder order = seed % 2 == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            ExternalHeapSort s = new ExternalHeapSort().chunkLength(100).fanIn(3).bufferBytes(20).order(order);
+            check(s, a, order);
+        }
+    }
+
+    @Test
+    public void testLittleEndian() throws Exception {
+        ExternalHeapSort s = new ExternalHeapSort().chunkLength(2).order(ByteOrder.LITTLE_ENDIAN);
+        check(s, new double[] { 5.0, -1.0, 4.0, 0.5, 2.0 }, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void testNaNAndSignedZeros() throws Exception {
+        Random r = new Random(0);
+        double[] a = new double[1000];
+        double[] special = { Double.NaN, -0.0, 0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (int i = 0; i < a.length; i++) {
+            a[i] = i % 3 == 0 ? special[r.nextInt(special.length)] : r.nextInt(21) - 10;
+        }
+        Path in = Files.createTempFile("in", ".bin");
+        Path out = Files.createTempFile("out", ".bin");
+        try {
+            write(in, a, ByteOrder.BIG_ENDIAN);
+            new ExternalHeapSort().chunkLength(100).fanIn(3).sort(in, out);
+            double[] t = a.clone();
+            Arrays.sort(t);
+            double[] sorted = read(out, ByteOrder.BIG_ENDIAN);
+            // compare bits, so that -0.0 and 0.0 differ and NaN equals NaN
+            long[] expected = new long[t.length];
+            long[] actual = new long[sorted.length];
+            for (int i = 0; i < t.length; i++) {
+                expected[i] = Double.doubleToRawLongBits(t[i]);
+            }
+            for (int i = 0; i < sorted.length; i++) {
+                actual[i] = Double.doubleToRawLongBits(sorted[i]);
+            }
+            assertArrayEquals(expected, actual);
+        } finally {
+            Files.deleteIfExists(in);
+            Files.deleteIfExists(out);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedInput() throws Exception {
+        Path in = Files.createTempFile("in", ".bin");
+        Path out = Files.createTempFile("out", ".bin");
+        try {
+            Files.write(in, new byte[12]);
+            new ExternalHeapSort().sort(in, out);
+        } finally {
+            Files.deleteIfExists(in);
+            Files.deleteIfExists(out);
+        }
+    }
+}
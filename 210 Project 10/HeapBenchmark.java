@@ -0,0 +1,210 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * A throughput benchmark for the heap code, with the JDK's Arrays.sort and
+ * PriorityQueue alongside as baselines.
+ *
+ * Every operation runs on sizes from 1K up to a maximum (10M by default,
+ * 100M or more given the memory) and on four kinds of input: random, sorted,
+ * reverse-sorted, and random over only a handful of distinct values. Each
+ * (operation, input, size) is warmed up, then timed over several
+ * iterations, each on a fresh copy of the input. It reports the best time
+ * per element, and the bytes allocated and garbage collections per
+ * iteration, so both a slowdown and an unexpected allocation show up as a
+ * change in the numbers.
+ *
+ * This is a plain main rather than a JMH suite so that it runs with no
+ * build tooling; run it on an otherwise idle machine with a fixed heap size,
+ * for example java -Xms8g -Xmx8g heaps.HeapBenchmark.
+ *
+ * Usage: HeapBenchmark [maxSize] [iterations]
+ */
+public class HeapBenchmark {
+    // keeps results live, so the JIT cannot discard the work that made them
+    static volatile double sink;
+
+    enum Input {
+        RANDOM, SORTED, REVERSED, DUPLICATES;
+
+        double[] make(int n, Random r) {
+            double[] a = new double[n];
+            for (int i = 0; i < n; i++) {
+                switch (this) {
+                case RANDOM:
+                    a[i] = r.nextDouble();
+                    break;
+                case SORTED:
+                    a[i] = i;
+                    break;
+                case REVERSED:
+                    a[i] = n - i;
+                    break;
+                case DUPLICATES:
+                    a[i] = r.nextInt(8);
+                    break;
+                }
+            }
+            return a;
+        }
+    }
+
+    /**
+     * One benchmarked operation. setUp prepares work from input (untimed),
+     * then run does the timed work.
+     */
+    abstract static class Operation {
+        final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        void setUp(double[] input, double[] work) {
+            System.arraycopy(input, 0, work, 0, input.length);
+        }
+
+        abstract void run(double[] input, double[] work);
+    }
+
+    static Operation[] operations() {
+        return new Operation[] {
+            new Operation("heapify") {
+                void run(double[] input, double[] work) {
+                    HeapUtilities.heapify(work);
+                    sink = work[0];
+                }
+            },
+            new Operation("heapSort") {
+                void run(double[] input, double[] work) {
+                    HeapUtilities.heapSort(work);
+                    sink = work[0];
+                }
+            },
+            new Operation("Arrays.sort") {
+                void run(double[] input, double[] work) {
+                    Arrays.sort(work);
+                    sink = work[0];
+                }
+            },
+            new Operation("siftDown") {
+                // n replacements of the root of a heap of n values
+                void setUp(double[] input, double[] work) {
+                    super.setUp(input, work);
+                    HeapUtilities.heapify(work);
+                }
+
+                void run(double[] input, double[] work) {
+                    int n = work.length;
+                    for (int i = 0; i < n; i++) {
+                        work[0] = input[i];
+                        HeapUtilities.siftDown(work, 0, n);
+                    }
+                    sink = work[0];
+                }
+            },
+            new Operation("DoubleMaxHeap") {
+                // n offers followed by n polls
+                void run(double[] input, double[] work) {
+                    DoubleMaxHeap h = new DoubleMaxHeap(input.length);
+                    for (double x : input) {
+                        h.offer(x);
+                    }
+                    double s = 0;
+                    while (!h.isEmpty()) {
+                        s += h.poll();
+                    }
+                    sink = s;
+                }
+            },
+            new Operation("PriorityQueue") {
+                // n offers followed by n polls
+                void run(double[] input, double[] work) {
+                    PriorityQueue<Double> q = new PriorityQueue<>(input.length, Collections.reverseOrder());
+                    for (double x : input) {
+                        q.offer(x);
+                    }
+                    double s = 0;
+                    while (!q.isEmpty()) {
+                        s += q.poll();
+                    }
+                    sink = s;
+                }
+            },
+        };
+    }
+
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    public static void main(String[] args) {
+        int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int warmups = 3;
+
+        // reading the allocation counter itself allocates a little; measure
+        // that once and subtract it from every reading
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long before = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - before);
+        }
+
+        System.out.println(String.format("%-14s %-10s %10s %12s %14s %8s",
+                "operation", "input", "size", "ns/element", "bytes/iter", "gcs/iter"));
+        for (long size = 1000; size <= maxSize; size *= 10) {
+            int n = (int) size;
+            for (Input kind : Input.values()) {
+                double[] input = kind.make(n, new Random(n));
+                double[] work = new double[n];
+                for (Operation op : operations()) {
+                    for (int i = 0; i < warmups; i++) {
+                        op.setUp(input, work);
+                        op.run(input, work);
+                    }
+                    long best = Long.MAX_VALUE;
+                    long bytes = 0;
+                    long gcs = 0;
+                    for (int i = 0; i < iterations; i++) {
+                        op.setUp(input, work);
+                        long gcBefore = gcCount();
+                        long bytesBefore = allocatedBytes();
+                        long start = System.nanoTime();
+                        op.run(input, work);
+                        long elapsed = System.nanoTime() - start;
+                        bytes += allocatedBytes() - bytesBefore - overhead;
+                        gcs += gcCount() - gcBefore;
+                        best = Math.min(best, elapsed);
+                    }
+                    System.out.println(String.format("%-14s %-10s %10d %12.2f %14d %8.1f",
+                            op.name, kind, n, (double) best / n, bytes / iterations,
+                            (double) gcs / iterations));
+                }
+            }
+        }
+    }
+}
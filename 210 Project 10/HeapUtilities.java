@@ -5,24 +5,58 @@
 package heaps;
 
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Random;
 
 public class HeapUtilities {
+    // some VMs reserve header words in an array, so stay a little below the limit
+    static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
     /**
      * Returns true iff the subtree of a starting at index i is a max-heap.
+     * 
+     * This is a debugging aid, not part of any build or sort path. It walks
+     * the subtree one level at a time rather than recursing, so it is safe
+     * to call on arbitrarily large arrays.
+     * 
      * @param a an array representing a mostly-complete tree, possibly a heap
      * @param i an index into that array representing a subtree rooted at i
      * @return true iff the subtree of a starting at index i is a max-heap
      */
     static boolean isHeap(double[] a, int i) {
-        if (!hasLeft(a, i)) {
-            return true;
-        }
-        if (a[i] > a[left(i)] && a[i] > a[right(i)]) {
-            return isHeap(a, left(i)) && isHeap(a, right(i));
+        return isHeap(a, i, a.length);
+    }
+
+    /**
+     * Returns true iff the subtree of a starting at index i, bounded by n
+     * (exclusive), is a max-heap.
+     * @param a an array representing a mostly-complete tree, possibly a heap
+     * @param i an index into that array representing a subtree rooted at i
+     * @param n the bound on the array (that is, where the heap ends)
+     * @return true iff the bounded subtree of a starting at index i is a max-heap
+     */
+    static boolean isHeap(double[] a, int i, int n) {
+        // [lo, hi] is the run of indices making up one level of the subtree;
+        // longs, since the next level's indices may not fit in an int
+        long lo = i;
+        long hi = i;
+        while (lo < n) {
+            long end = Math.min(hi, n - 1);
+            for (long j = lo; j <= end; j++) {
+                long l = 2 * j + 1;
+                if (l < n && a[(int) l] > a[(int) j]) {
+                    return false;
+                }
+                if (l + 1 < n && a[(int) l + 1] > a[(int) j]) {
+                    return false;
+                }
+            }
+            lo = 2 * lo + 1;
+            hi = 2 * hi + 2;
         }
-        return false;
+        return true;
     }
+
     static int parent(int i) {
         return (i - 1) / 2;
     }
@@ -60,32 +94,60 @@ public class HeapUtilities {
      * @param n the bound on the array (that is, where to stop sifting)
      */
     static void siftDown(double[] a, int i, int n) {
-        while (true) {
-            if (!hasLeft(a, i)) {
-                System.out.println("doesn't have anything *left* to do");
-                return;
-            }
-            int largestIndex = i;
-            System.out.println("Left - " + Integer.toString(left(i)));
-            System.out.println("Right - " + Integer.toString(right(i)));
-            if (left(i) < n && a[left(i)] > a[largestIndex]) {
-                System.out.println("doing the left thing");
-                largestIndex = left(i);
-            }
-            if (hasRight(a, i)) {
-                if (right(i) < n && a[right(i)] > a[largestIndex]) {
-                    System.out.println("doing the right thing");
-                    largestIndex = right(i);
-                }
+        siftDown(a, 0, i, n);
+    }
+
+    /**
+     * Perform the heap siftdown operation on index i of the heap stored in
+     * a[from..from+n-1]. Both i and n are relative to from, so the heap is
+     * laid out exactly as if a[from] were a[0].
+     * 
+     * @param a the array being sifted
+     * @param from the index of the root of the heap
+     * @param i the index (relative to from) of the element to sift down
+     * @param n the bound on the heap (that is, where to stop sifting)
+     */
+    static void siftDown(double[] a, int from, int i, int n) {
+        // rather than swapping at every level, hold the sifted value aside
+        // and shift the larger child up into the hole
+        double x = a[from + i];
+        int firstLeaf = n >>> 1;
+        while (i < firstLeaf) {
+            int largestIndex = left(i);
+            int r = largestIndex + 1;
+            if (r < n && a[from + r] > a[from + largestIndex]) {
+                largestIndex = r;
             }
-            if (largestIndex == i) {
-                System.out.println("It is finished");
-                return;
+            if (a[from + largestIndex] <= x) {
+                break;
             }
-            System.out.println("Swapping " + Integer.toString(i) + " and " + Integer.toString(largestIndex));
-            swap(a, i, largestIndex);
+            a[from + i] = a[from + largestIndex];
             i = largestIndex;
         }
+        a[from + i] = x;
+    }
+
+    /**
+     * Perform the heap siftup operation on index i of the array a.
+     * 
+     * This method assumes a[0..i-1] is already a valid max-heap. The
+     * element at i is moved towards the root until its parent is no
+     * smaller than it.
+     * 
+     * @param a the array being sifted
+     * @param i the index of the element to sift up
+     */
+    static void siftUp(double[] a, int i) {
+        double x = a[i];
+        while (i > 0) {
+            int p = parent(i);
+            if (a[p] >= x) {
+                break;
+            }
+            a[i] = a[p];
+            i = p;
+        }
+        a[i] = x;
     }
     
 
@@ -94,13 +156,29 @@ public class HeapUtilities {
      * @param a an array of values
      */
     static void heapify(double[] a) {
-        for (int i = a.length - 1; i >= 0; i--) {
-            if (hasLeft(a, i)) {
-                if (isHeap(a, left(i)) && isHeap(a, right(i))) {
-                    siftDown(a, i, a.length);
-                }
-            }
+        heapify(a, a.length);
+    }
+
+    /**
+     * Heapify the first n elements of the array a in-place in linear time
+     * as a max-heap.
+     * 
+     * This is Floyd's bottom-up construction: every index at or past n/2 is
+     * a leaf and so already a heap, and sifting down each parent from the
+     * last one back to the root leaves both of its subtrees valid before it
+     * is visited.
+     * 
+     * The result is checked with isHeap only when assertions are enabled
+     * (java -ea), so the check costs nothing in production runs.
+     * 
+     * @param a an array of values
+     * @param n the bound on the array (that is, where the heap ends)
+     */
+    static void heapify(double[] a, int n) {
+        for (int i = (n >>> 1) - 1; i >= 0; i--) {
+            siftDown(a, i, n);
         }
+        assert isHeap(a, 0, n) : "heapify did not produce a max-heap";
     }
 
     /**
@@ -110,11 +188,289 @@ public class HeapUtilities {
      */
     static void heapSort(double[] a) {
         heapify(a);
-        for (int i = a.length - 1; i >= 0; i--) {
+        for (int i = a.length - 1; i > 0; i--) {
             swap(a, 0, i);
             siftDown(a, 0, i);
         }
     }
+
+    /**
+     * Heapsort the range a[from..to-1] in-place, resulting in the elements
+     * of that range being in ascending order. The rest of a is untouched.
+     * @param a
+     * @param from the first index of the range (inclusive)
+     * @param to the last index of the range (exclusive)
+     */
+    static void heapSort(double[] a, int from, int to) {
+        int n = to - from;
+        for (int i = (n >>> 1) - 1; i >= 0; i--) {
+            siftDown(a, from, i, n);
+        }
+        for (int i = n - 1; i > 0; i--) {
+            swap(a, from, from + i);
+            siftDown(a, from, 0, i);
+        }
+    }
+
+    /**
+     * Sort the array a in ascending order using up to parallelism threads.
+     * See ParallelHeapSort for how the work is split.
+     * @param a
+     * @param parallelism the number of threads to sort with
+     */
+    public static void parallelHeapSort(double[] a, int parallelism) {
+        ParallelHeapSort.sort(a, parallelism);
+    }
+    
+    /**
+     * Return the capacity an array backing a growable heap should grow to:
+     * half as large again as its current length, but at least minCapacity.
+     * @param length the current length of the array
+     * @param minCapacity the number of elements the array must hold
+     * @return the new length of the array
+     */
+    static int newCapacity(int length, int minCapacity) {
+        if (minCapacity < 0 || minCapacity > MAX_ARRAY_LENGTH) {
+            throw new OutOfMemoryError("required heap capacity too large: " + minCapacity);
+        }
+        int newCapacity = length + (length >> 1) + 1;
+        if (newCapacity < 0 || newCapacity > MAX_ARRAY_LENGTH) {
+            newCapacity = MAX_ARRAY_LENGTH;
+        }
+        return Math.max(newCapacity, minCapacity);
+    }
+
+    // The int, long and Comparator versions below mirror the double versions
+    // above exactly; see those for the contract of each operation.
+
+    static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    static void siftDown(int[] a, int i, int n) {
+        int x = a[i];
+        int firstLeaf = n >>> 1;
+        while (i < firstLeaf) {
+            int largestIndex = left(i);
+            int r = largestIndex + 1;
+            if (r < n && a[r] > a[largestIndex]) {
+                largestIndex = r;
+            }
+            if (a[largestIndex] <= x) {
+                break;
+            }
+            a[i] = a[largestIndex];
+            i = largestIndex;
+        }
+        a[i] = x;
+    }
+
+    static void siftUp(int[] a, int i) {
+        int x = a[i];
+        while (i > 0) {
+            int p = parent(i);
+            if (a[p] >= x) {
+                break;
+            }
+            a[i] = a[p];
+            i = p;
+        }
+        a[i] = x;
+    }
+
+    static boolean isHeap(int[] a, int i, int n) {
+        long lo = i;
+        long hi = i;
+        while (lo < n) {
+            long end = Math.min(hi, n - 1);
+            for (long j = lo; j <= end; j++) {
+                long l = 2 * j + 1;
+                if (l < n && a[(int) l] > a[(int) j]) {
+                    return false;
+                }
+                if (l + 1 < n && a[(int) l + 1] > a[(int) j]) {
+                    return false;
+                }
+            }
+            lo = 2 * lo + 1;
+            hi = 2 * hi + 2;
+        }
+        return true;
+    }
+
+    static void heapify(int[] a, int n) {
+        for (int i = (n >>> 1) - 1; i >= 0; i--) {
+            siftDown(a, i, n);
+        }
+        assert isHeap(a, 0, n) : "heapify did not produce a max-heap";
+    }
+
+    static void heapify(int[] a) {
+        heapify(a, a.length);
+    }
+
+    static void heapSort(int[] a) {
+        heapify(a);
+        for (int i = a.length - 1; i > 0; i--) {
+            swap(a, 0, i);
+            siftDown(a, 0, i);
+        }
+    }
+
+    static void swap(long[] a, int i, int j) {
+        long t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    static void siftDown(long[] a, int i, int n) {
+        siftDown(a, 0, i, n);
+    }
+
+    static void siftDown(long[] a, int from, int i, int n) {
+        long x = a[from + i];
+        int firstLeaf = n >>> 1;
+        while (i < firstLeaf) {
+            int largestIndex = left(i);
+            int r = largestIndex + 1;
+            if (r < n && a[from + r] > a[from + largestIndex]) {
+                largestIndex = r;
+            }
+            if (a[from + largestIndex] <= x) {
+                break;
+            }
+            a[from + i] = a[from + largestIndex];
+            i = largestIndex;
+        }
+        a[from + i] = x;
+    }
+
+    static void siftUp(long[] a, int i) {
+        long x = a[i];
+        while (i > 0) {
+            int p = parent(i);
+            if (a[p] >= x) {
+                break;
+            }
+            a[i] = a[p];
+            i = p;
+        }
+        a[i] = x;
+    }
+
+    static boolean isHeap(long[] a, int i, int n) {
+        long lo = i;
+        long hi = i;
+        while (lo < n) {
+            long end = Math.min(hi, n - 1);
+            for (long j = lo; j <= end; j++) {
+                long l = 2 * j + 1;
+                if (l < n && a[(int) l] > a[(int) j]) {
+                    return false;
+                }
+                if (l + 1 < n && a[(int) l + 1] > a[(int) j]) {
+                    return false;
+                }
+            }
+            lo = 2 * lo + 1;
+            hi = 2 * hi + 2;
+        }
+        return true;
+    }
+
+    static void heapify(long[] a, int n) {
+        for (int i = (n >>> 1) - 1; i >= 0; i--) {
+            siftDown(a, i, n);
+        }
+        assert isHeap(a, 0, n) : "heapify did not produce a max-heap";
+    }
+
+    static void heapify(long[] a) {
+        heapify(a, a.length);
+    }
+
+    static void heapSort(long[] a) {
+        heapify(a);
+        for (int i = a.length - 1; i > 0; i--) {
+            swap(a, 0, i);
+            siftDown(a, 0, i);
+        }
+    }
+
+    static void heapSort(long[] a, int from, int to) {
+        int n = to - from;
+        for (int i = (n >>> 1) - 1; i >= 0; i--) {
+            siftDown(a, from, i, n);
+        }
+        for (int i = n - 1; i > 0; i--) {
+            swap(a, from, from + i);
+            siftDown(a, from, 0, i);
+        }
+    }
+
+    static <E> void swap(E[] a, int i, int j) {
+        E t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    static <E> void siftDown(E[] a, int i, int n, Comparator<? super E> c) {
+        E x = a[i];
+        int firstLeaf = n >>> 1;
+        while (i < firstLeaf) {
+            int largestIndex = left(i);
+            int r = largestIndex + 1;
+            if (r < n && c.compare(a[r], a[largestIndex]) > 0) {
+                largestIndex = r;
+            }
+            if (c.compare(a[largestIndex], x) <= 0) {
+                break;
+            }
+            a[i] = a[largestIndex];
+            i = largestIndex;
+        }
+        a[i] = x;
+    }
+
+    static <E> void siftUp(E[] a, int i, Comparator<? super E> c) {
+        E x = a[i];
+        while (i > 0) {
+            int p = parent(i);
+            if (c.compare(a[p], x) >= 0) {
+                break;
+            }
+            a[i] = a[p];
+            i = p;
+        }
+        a[i] = x;
+    }
+
+    static <E> void heapify(E[] a, int n, Comparator<? super E> c) {
+        for (int i = (n >>> 1) - 1; i >= 0; i--) {
+            siftDown(a, i, n, c);
+        }
+    }
+
+    static <E> void heapify(E[] a, Comparator<? super E> c) {
+        heapify(a, a.length, c);
+    }
+
+    /**
+     * Heapsort the array a in-place, resulting in the elements of a being
+     * in ascending order according to c. Unlike Arrays.sort, this is not
+     * stable: equal elements may be reordered.
+     * @param a
+     * @param c the ordering of the elements
+     */
+    static <E> void heapSort(E[] a, Comparator<? super E> c) {
+        heapify(a, c);
+        for (int i = a.length - 1; i > 0; i--) {
+            swap(a, 0, i);
+            siftDown(a, 0, i, c);
+        }
+    }
     
     public static void main(String[] args) {
         Random r = new Random(0);
@@ -7,7 +7,9 @@ package heaps;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 
@@ -172,6 +174,74 @@ public class HeapUtilitiesTest {
         }
     }
 
+    @Test
+    public void testIsHeapDuplicates() throws Exception {
+        double[] a = { 1.0, 1.0, 1.0, 0.0 };
+        assertTrue(HeapUtilities.isHeap(a, 0));
+        double[] b = { 1.0, 0.0, 1.0, 2.0 };
+        assertFalse(HeapUtilities.isHeap(b, 0));
+        assertTrue(HeapUtilities.isHeap(b, 0, 3));
+    }
+
+    @Test
+    public void testHeapifyBounded() throws Exception {
+        double[] a = { 0.0, 1.0, 2.0, 9.0 };
+        double[] t = { 2.0, 1.0, 0.0, 9.0 };
+        HeapUtilities.heapify(a, 3);
+        assertArrayEquals(t, a, 0);
+    }
+
+    @Test
+    public void testHeapifyLarge() throws Exception {
+        final int length = 1 << 20;
+        Random r = new Random(0);
+        double[] a = new double[length];
+        for (int i = 0; i < length; i++) {
+            a[i] = r.nextInt(1000);
+        }
+        HeapUtilities.heapify(a);
+        assertTrue(HeapUtilities.isHeap(a, 0));
+    }
+
+    @Test
+    public void testHeapSortInt100Randomized() throws Exception {
+        for (int seed = 0; seed < 100; seed++) {
+            Random r = new Random(seed);
+            int[] a = r.ints(100 + seed, -50, 50).toArray();
+            int[] t = a.clone();
+            Arrays.sort(t);
+            HeapUtilities.heapSort(a);
+            assertArrayEquals(t, a);
+        }
+    }
+
+    @Test
+    public void testHeapSortLong100Randomized() throws Exception {
+        for (int seed = 0; seed < 100; seed++) {
+            Random r = new Random(seed);
+            long[] a = r.longs(100 + seed).toArray();
+            long[] t = a.clone();
+            Arrays.sort(t);
+            HeapUtilities.heapSort(a);
+            assertArrayEquals(t, a);
+        }
+    }
+
+    @Test
+    public void testHeapSortComparator100Randomized() throws Exception {
+        for (int seed = 0; seed < 100; seed++) {
+            Random r = new Random(seed);
+            String[] a = new String[100 + seed];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = Integer.toString(r.nextInt(1000));
+            }
+            String[] t = a.clone();
+            Arrays.sort(t, Comparator.reverseOrder());
+            HeapUtilities.heapSort(a, Comparator.reverseOrder());
+            assertArrayEquals(t, a);
+        }
+    }
+
     private static boolean isSorted(double[] a) {
         for (int i = 1; i < a.length; i++) {
             if (a[i - 1] > a[i]) {
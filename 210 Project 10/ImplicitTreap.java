@@ -0,0 +1,349 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * A sequence kept in a treap keyed implicitly by position: a rope.
+ *
+ * No keys are stored. A node's index is the number of nodes before it in
+ * order, which the subtree sizes give on the way down, so every edit is a
+ * split by position followed by joins: insert, removeRange, concat and
+ * reverse are all expected O(log n), however long the sequence, where an
+ * ArrayList would shift O(n) elements.
+ *
+ * reverse is lazy. It flags the root of the reversed range, and a flagged
+ * node's children are swapped, and the flag passed down to them, only when
+ * something next descends through it.
+ */
+public class ImplicitTreap<E> implements Iterable<E> {
+    static final Random random = new Random();
+
+    static final class Node<E> {
+        E data;
+        final double priority = random.nextDouble();
+        Node<E> left;
+        Node<E> right;
+        int size = 1;
+        // this subtree's order is to be reversed
+        boolean reversed;
+
+        Node(E data) {
+            this.data = data;
+        }
+
+        static int size(Node<?> n) {
+            return n == null ? 0 : n.size;
+        }
+
+        void updateSize() {
+            size = size(left) + size(right) + 1;
+        }
+
+        /**
+         * Apply a pending reversal to this node, passing it on to its children.
+         */
+        void push() {
+            if (reversed) {
+                Node<E> t = left;
+                left = right;
+                right = t;
+                if (left != null) {
+                    left.reversed = !left.reversed;
+                }
+                if (right != null) {
+                    right.reversed = !right.reversed;
+                }
+                reversed = false;
+            }
+        }
+    }
+
+    /**
+     * The result of splitting a subtree by position: the roots of the first
+     * k elements and of the rest.
+     */
+    static final class Split<E> {
+        Node<E> left;
+        Node<E> right;
+    }
+
+    Node<E> root;
+
+    public ImplicitTreap() {
+    }
+
+    private ImplicitTreap(Node<E> root) {
+        this.root = root;
+    }
+
+    public int size() {
+        return Node.size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Split the subtree rooted at n into its first k elements and the rest.
+     */
+    static <E> void split(Node<E> n, int k, Split<E> out) {
+        if (n == null) {
+            out.left = null;
+            out.right = null;
+            return;
+        }
+        n.push();
+        if (Node.size(n.left) < k) {
+            split(n.right, k - Node.size(n.left) - 1, out);
+            n.right = out.left;
+            out.left = n;
+        } else {
+            split(n.left, k, out);
+            n.left = out.right;
+            out.right = n;
+        }
+        n.updateSize();
+    }
+
+    /**
+     * Join two subtrees, all of a before all of b.
+     */
+    static <E> Node<E> join(Node<E> a, Node<E> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.push();
+            a.right = join(a.right, b);
+            a.updateSize();
+            return a;
+        } else {
+            b.push();
+            b.left = join(a, b.left);
+            b.updateSize();
+            return b;
+        }
+    }
+
+    private void checkIndex(int i, int length) {
+        if (i < 0 || i >= length) {
+            throw new IndexOutOfBoundsException("index " + i + " out of bounds for length " + length);
+        }
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > size() || from > to) {
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + ") out of bounds for length " + size());
+        }
+    }
+
+    private Node<E> node(int i) {
+        checkIndex(i, size());
+        Node<E> n = root;
+        while (true) {
+            n.push();
+            int l = Node.size(n.left);
+            if (i < l) {
+                n = n.left;
+            } else if (i == l) {
+                return n;
+            } else {
+                i -= l + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    /**
+     * @param i
+     * @return the element at index i
+     * @throws IndexOutOfBoundsException if i is not in [0, size())
+     */
+    public E get(int i) {
+        return node(i).data;
+    }
+
+    /**
+     * Replace the element at index i.
+     * @param i
+     * @param e
+     * @return the element previously at index i
+     * @throws IndexOutOfBoundsException if i is not in [0, size())
+     */
+    public E set(int i, E e) {
+        Node<E> n = node(i);
+        E old = n.data;
+        n.data = e;
+        return old;
+    }
+
+    /**
+     * Append e to the end of the sequence.
+     * @param e
+     */
+    public void add(E e) {
+        root = join(root, new Node<>(e));
+    }
+
+    /**
+     * Insert e at index i, shifting the elements from i on up by one.
+     * @param i
+     * @param e
+     * @throws IndexOutOfBoundsException if i is not in [0, size()]
+     */
+    public void insert(int i, E e) {
+        checkIndex(i, size() + 1);
+        Split<E> parts = new Split<>();
+        split(root, i, parts);
+        root = join(join(parts.left, new Node<>(e)), parts.right);
+    }
+
+    /**
+     * Insert every element of other at index i, leaving other empty.
+     * @param i
+     * @param other
+     * @throws IndexOutOfBoundsException if i is not in [0, size()]
+     * @throws IllegalArgumentException if other is this sequence
+     */
+    public void insertAll(int i, ImplicitTreap<E> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("cannot insert a sequence into itself");
+        }
+        checkIndex(i, size() + 1);
+        Split<E> parts = new Split<>();
+        split(root, i, parts);
+        root = join(join(parts.left, other.root), parts.right);
+        other.root = null;
+    }
+
+    /**
+     * Remove and return the element at index i.
+     * @param i
+     * @return the element that was at index i
+     * @throws IndexOutOfBoundsException if i is not in [0, size())
+     */
+    public E remove(int i) {
+        checkIndex(i, size());
+        return cut(i, i + 1).root.data;
+    }
+
+    /**
+     * Remove the elements from index from (inclusive) to to (exclusive).
+     * @param from
+     * @param to
+     * @throws IndexOutOfBoundsException if the range is not within [0, size()]
+     */
+    public void removeRange(int from, int to) {
+        cut(from, to);
+    }
+
+    /**
+     * Remove the elements from index from (inclusive) to to (exclusive), and
+     * return them as a sequence of their own.
+     * @param from
+     * @param to
+     * @return the removed elements
+     * @throws IndexOutOfBoundsException if the range is not within [0, size()]
+     */
+    public ImplicitTreap<E> cut(int from, int to) {
+        checkRange(from, to);
+        Split<E> parts = new Split<>();
+        split(root, to, parts);
+        Node<E> rest = parts.right;
+        split(parts.left, from, parts);
+        root = join(parts.left, rest);
+        return new ImplicitTreap<>(parts.right);
+    }
+
+    /**
+     * Append every element of other, leaving other empty.
+     * @param other
+     */
+    public void concat(ImplicitTreap<E> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("cannot concat a sequence to itself");
+        }
+        root = join(root, other.root);
+        other.root = null;
+    }
+
+    /**
+     * Reverse the order of the elements from index from (inclusive) to to
+     * (exclusive).
+     * @param from
+     * @param to
+     * @throws IndexOutOfBoundsException if the range is not within [0, size()]
+     */
+    public void reverse(int from, int to) {
+        checkRange(from, to);
+        Split<E> parts = new Split<>();
+        split(root, to, parts);
+        Node<E> rest = parts.right;
+        split(parts.left, from, parts);
+        if (parts.right != null) {
+            parts.right.reversed = !parts.right.reversed;
+        }
+        root = join(join(parts.left, parts.right), rest);
+    }
+
+    /**
+     * @return the elements in order, as a new list
+     */
+    public List<E> toList() {
+        List<E> list = new ArrayList<>(size());
+        for (E e : this) {
+            list.add(e);
+        }
+        return list;
+    }
+
+    /**
+     * Return an iterator over the elements in order. It applies pending
+     * reversals as it goes, so the sequence must not be modified while it
+     * is in use.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            final ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+            {
+                pushLeftSpine(root);
+            }
+
+            private void pushLeftSpine(Node<E> n) {
+                for (; n != null; n = n.left) {
+                    n.push();
+                    stack.push(n);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<E> n = stack.pop();
+                pushLeftSpine(n.right);
+                return n.data;
+            }
+        };
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class ImplicitTreapTest {
+
+   private static boolean isValid(ImplicitTreap.Node<?> n) {
+      if (n == null) {
+         return true;
+      }
+      if ((n.left != null && n.left.priority > n.priority) || (n.right != null && n.right.priority > n.priority)) {
+         return false;
+      }
+      return n.size == ImplicitTreap.Node.size(n.left) + ImplicitTreap.Node.size(n.right) + 1
+            && isValid(n.left) && isValid(n.right);
+   }
+
+   @Test
+   public void testAgainstArrayList100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         ImplicitTreap<Integer> t = new ImplicitTreap<>();
+         List<Integer> expected = new ArrayList<>();
+         int next = 0;
+         for (int i = 0; i < 400; i++) {
+            int n = expected.size();
+            int a = r.nextInt(n + 1);
+            int b = a + r.nextInt(n - a + 1);
+            switch (r.nextInt(7)) {
+            case 0:
+               t.add(next);
+               expected.add(next++);
+               break;
+            case 1:
+            case 2:
+               t.insert(a, next);
+               expected.add(a, next++);
+               break;
+            case 3:
+               if (n > 0) {
+                  int j = r.nextInt(n);
+                  assertEquals(expected.remove(j), t.remove(j));
+               }
+               break;
+            case 4:
+               t.removeRange(a, b);
+               expected.subList(a, b).clear();
+               break;
+            case 5:
+               t.reverse(a, b);
+               Collections.reverse(expected.subList(a, b));
+               break;
+            default:
+               if (n > 0) {
+                  int j = r.nextInt(n);
+                  assertEquals(expected.set(j, -j), t.set(j, -j));
+               }
+            }
+            assertEquals(expected.size(), t.size());
+            if (!expected.isEmpty()) {
+               int j = r.nextInt(expected.size());
+               assertEquals(expected.get(j), t.get(j));
+            }
+         }
+         assertTrue(isValid(t.root));
+         assertEquals(expected, t.toList());
+      }
+   }
+
+   @Test
+   public void testCutConcatInsertAll() throws Exception {
+      ImplicitTreap<Integer> t = new ImplicitTreap<>();
+      for (int i = 0; i < 10; i++) {
+         t.add(i);
+      }
+      ImplicitTreap<Integer> middle = t.cut(3, 7);
+      assertEquals(Arrays.asList(3, 4, 5, 6), middle.toList());
+      assertEquals(Arrays.asList(0, 1, 2, 7, 8, 9), t.toList());
+      middle.reverse(0, 4);
+      t.insertAll(1, middle);
+      assertTrue(middle.isEmpty());
+      assertEquals(Arrays.asList(0, 6, 5, 4, 3, 1, 2, 7, 8, 9), t.toList());
+      ImplicitTreap<Integer> tail = new ImplicitTreap<>();
+      tail.add(10);
+      t.concat(tail);
+      assertEquals(11, t.size());
+      assertEquals(10, (int) t.get(10));
+   }
+
+   @Test
+   public void testLargeSequence() throws Exception {
+      // edits in the middle of a long sequence stay fast
+      ImplicitTreap<Integer> t = new ImplicitTreap<>();
+      for (int i = 0; i < 200_000; i++) {
+         t.insert(t.size() / 2, i);
+      }
+      for (int i = 0; i < 200_000; i++) {
+         t.reverse(i % 1000, 100_000 + i % 1000);
+      }
+      assertEquals(200_000, t.size());
+      assertTrue(isValid(t.root));
+   }
+
+   @Test(expected = IndexOutOfBoundsException.class)
+   public void testInsertOutOfBounds() throws Exception {
+      new ImplicitTreap<Integer>().insert(1, 0);
+   }
+
+   @Test(expected = IndexOutOfBoundsException.class)
+   public void testReverseOutOfBounds() throws Exception {
+      ImplicitTreap<Integer> t = new ImplicitTreap<>();
+      t.add(0);
+      t.reverse(0, 2);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInsertAllIntoItself() throws Exception {
+      ImplicitTreap<Integer> t = new ImplicitTreap<>();
+      for (int i = 0; i < 10; i++) {
+         t.add(i);
+      }
+      t.insertAll(3, t);
+   }
+}
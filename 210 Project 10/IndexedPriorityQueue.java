@@ -0,0 +1,285 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A priority queue of int handles in [0, capacity), each with a double key,
+ * that can change or remove the key of any handle in O(log n).
+ *
+ * Graph searches like Dijkstra's algorithm use this to lower a vertex's
+ * distance in place rather than inserting a duplicate. There is no object
+ * per entry: the heap is an int[] of handles, with an int[] from each
+ * handle to its position in the heap and a double[] of keys by handle.
+ *
+ * The queue is either a min-queue (min) or a max-queue (max). Internally it
+ * is always a max-heap, in the layout of HeapUtilities; a min-queue stores
+ * its keys negated.
+ */
+public class IndexedPriorityQueue {
+    // 1 for a max-queue, -1 for a min-queue
+    final double sign;
+    // heap[i] is the handle at position i of the heap
+    final int[] heap;
+    // pos[h] is the position of handle h in heap, or -1 if h is not queued
+    final int[] pos;
+    // keys[h] is the key of handle h, multiplied by sign
+    final double[] keys;
+    int size;
+
+    private IndexedPriorityQueue(int capacity, double sign) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("negative capacity: " + capacity);
+        }
+        this.sign = sign;
+        heap = new int[capacity];
+        pos = new int[capacity];
+        keys = new double[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    /**
+     * @param capacity one more than the largest handle that will be used
+     * @return an empty queue that polls the handle with the smallest key first
+     */
+    public static IndexedPriorityQueue min(int capacity) {
+        return new IndexedPriorityQueue(capacity, -1);
+    }
+
+    /**
+     * @param capacity one more than the largest handle that will be used
+     * @return an empty queue that polls the handle with the largest key first
+     */
+    public static IndexedPriorityQueue max(int capacity) {
+        return new IndexedPriorityQueue(capacity, 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return heap.length;
+    }
+
+    /**
+     * Remove every handle from the queue, in time proportional to its size.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            pos[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * @param h a handle
+     * @return true iff h is in the queue
+     */
+    public boolean contains(int h) {
+        return pos[h] >= 0;
+    }
+
+    /**
+     * @param h a handle in the queue
+     * @return the key of h
+     * @throws NoSuchElementException if h is not in the queue
+     */
+    public double keyOf(int h) {
+        checkContains(h);
+        return keys[h] * sign;
+    }
+
+    private void checkContains(int h) {
+        if (pos[h] < 0) {
+            throw new NoSuchElementException("handle not in queue: " + h);
+        }
+    }
+
+    /**
+     * Add the handle h to the queue with the given key.
+     * @param h a handle not already in the queue
+     * @param key
+     * @throws IllegalArgumentException if h is already in the queue
+     */
+    public void insert(int h, double key) {
+        if (pos[h] >= 0) {
+            throw new IllegalArgumentException("handle already in queue: " + h);
+        }
+        keys[h] = key * sign;
+        heap[size] = h;
+        pos[h] = size;
+        siftUp(size);
+        size++;
+    }
+
+    /**
+     * @return the handle that would be polled next
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public int peekHandle() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return heap[0];
+    }
+
+    /**
+     * @return the key of the handle that would be polled next
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public double peekKey() {
+        return keys[peekHandle()] * sign;
+    }
+
+    /**
+     * Remove and return the handle with the smallest key (for a min-queue)
+     * or largest key (for a max-queue).
+     * @return the removed handle
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public int poll() {
+        int h = peekHandle();
+        removeAt(0);
+        return h;
+    }
+
+    /**
+     * Remove the handle h from the queue.
+     * @param h a handle in the queue
+     * @throws NoSuchElementException if h is not in the queue
+     */
+    public void remove(int h) {
+        checkContains(h);
+        removeAt(pos[h]);
+    }
+
+    private void removeAt(int i) {
+        int h = heap[i];
+        size--;
+        pos[h] = -1;
+        if (i == size) {
+            return;
+        }
+        int moved = heap[size];
+        move(moved, i);
+        // the moved handle may belong either above or below i
+        siftUp(i);
+        if (pos[moved] == i) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Set the key of h, moving it up or down the queue as needed.
+     * @param h a handle in the queue
+     * @param key the new key
+     * @throws NoSuchElementException if h is not in the queue
+     */
+    public void changeKey(int h, double key) {
+        checkContains(h);
+        double old = keys[h];
+        keys[h] = key * sign;
+        if (keys[h] > old) {
+            siftUp(pos[h]);
+        } else {
+            siftDown(pos[h]);
+        }
+    }
+
+    /**
+     * Lower the key of h.
+     * @param h a handle in the queue
+     * @param key the new key, no greater than the current one
+     * @throws NoSuchElementException if h is not in the queue
+     * @throws IllegalArgumentException if key is greater than the current key
+     */
+    public void decreaseKey(int h, double key) {
+        if (key > keyOf(h)) {
+            throw new IllegalArgumentException("new key " + key + " is greater than " + keyOf(h));
+        }
+        changeKey(h, key);
+    }
+
+    /**
+     * Raise the key of h.
+     * @param h a handle in the queue
+     * @param key the new key, no smaller than the current one
+     * @throws NoSuchElementException if h is not in the queue
+     * @throws IllegalArgumentException if key is smaller than the current key
+     */
+    public void increaseKey(int h, double key) {
+        if (key < keyOf(h)) {
+            throw new IllegalArgumentException("new key " + key + " is smaller than " + keyOf(h));
+        }
+        changeKey(h, key);
+    }
+
+    private void move(int h, int i) {
+        heap[i] = h;
+        pos[h] = i;
+    }
+
+    /**
+     * siftUp from HeapUtilities, comparing the keys of the handles.
+     */
+    private void siftUp(int i) {
+        int h = heap[i];
+        double x = keys[h];
+        while (i > 0) {
+            int p = HeapUtilities.parent(i);
+            if (keys[heap[p]] >= x) {
+                break;
+            }
+            move(heap[p], i);
+            i = p;
+        }
+        move(h, i);
+    }
+
+    /**
+     * siftDown from HeapUtilities, comparing the keys of the handles.
+     */
+    private void siftDown(int i) {
+        int h = heap[i];
+        double x = keys[h];
+        int firstLeaf = size >>> 1;
+        while (i < firstLeaf) {
+            int largestIndex = HeapUtilities.left(i);
+            int r = largestIndex + 1;
+            if (r < size && keys[heap[r]] > keys[heap[largestIndex]]) {
+                largestIndex = r;
+            }
+            if (keys[heap[largestIndex]] <= x) {
+                break;
+            }
+            move(heap[largestIndex], i);
+            i = largestIndex;
+        }
+        move(h, i);
+    }
+
+    /**
+     * Returns true iff the queue is a valid heap and its position index is
+     * consistent. A debugging aid.
+     */
+    boolean isHeap() {
+        for (int i = 0; i < size; i++) {
+            if (pos[heap[i]] != i) {
+                return false;
+            }
+            if (i > 0 && keys[heap[i]] > keys[heap[HeapUtilities.parent(i)]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
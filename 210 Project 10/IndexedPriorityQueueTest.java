@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class IndexedPriorityQueueTest {
+
+    @Test
+    public void testMinQueue() throws Exception {
+        IndexedPriorityQueue q = IndexedPriorityQueue.min(4);
+        q.insert(0, 3.0);
+        q.insert(1, 1.0);
+        q.insert(2, 2.0);
+        assertTrue(q.contains(1));
+        assertFalse(q.contains(3));
+        assertEquals(1, q.peekHandle());
+        assertEquals(1.0, q.peekKey(), 0);
+        q.decreaseKey(0, 0.5);
+        assertEquals(0, q.poll());
+        assertEquals(1, q.poll());
+        assertEquals(2, q.poll());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void testMaxQueueIncreaseKey() throws Exception {
+        IndexedPriorityQueue q = IndexedPriorityQueue.max(3);
+        q.insert(0, 1.0);
+        q.insert(1, 2.0);
+        q.insert(2, 3.0);
+        q.increaseKey(0, 4.0);
+        assertEquals(4.0, q.keyOf(0), 0);
+        assertEquals(0, q.poll());
+        assertEquals(2, q.poll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecreaseKeyUpwards() throws Exception {
+        IndexedPriorityQueue q = IndexedPriorityQueue.min(1);
+        q.insert(0, 1.0);
+        q.decreaseKey(0, 2.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInsertTwice() throws Exception {
+        IndexedPriorityQueue q = IndexedPriorityQueue.min(1);
+        q.insert(0, 1.0);
+        q.insert(0, 1.0);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testRemoveAbsent() throws Exception {
+        IndexedPriorityQueue.min(1).remove(0);
+    }
+
+    @Test
+    public void testRandomOperations100Randomized() throws Exception {
+        final int capacity = 50;
+        for (int seed = 0; seed < 100; seed++) {
+            Random r = new Random(seed);
+            IndexedPriorityQueue q = IndexedPriorityQueue.min(capacity);
+            double[] expected = new double[capacity];
+            boolean[] in = new boolean[capacity];
+            for (int op = 0; op < 500; op++) {
+                int h = r.nextInt(capacity);
+                double key = r.nextInt(100);
+                if (!in[h]) {
+                    q.insert(h, key);
+                    in[h] = true;
+                    expected[h] = key;
+                } else if (r.nextBoolean()) {
+                    q.changeKey(h, key);
+                    expected[h] = key;
+                } else {
+                    q.remove(h);
+                    in[h] = false;
+                }
+                assertTrue(q.isHeap());
+            }
+            double last = Double.NEGATIVE_INFINITY;
+            while (!q.isEmpty()) {
+                double key = q.peekKey();
+                int h = q.poll();
+                assertTrue(in[h]);
+                assertEquals(expected[h], key, 0);
+                assertTrue(key >= last);
+                in[h] = false;
+                last = key;
+            }
+            for (boolean b : in) {
+                assertFalse(b);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class IntMaxHeapTest {
+
+    @Test
+    public void testPackedKeys() throws Exception {
+        // priority in the high 16 bits, id in the low 16 bits
+        IntMaxHeap h = new IntMaxHeap();
+        h.offer((100 << 16) | 7);
+        h.offer((200 << 16) | 3);
+        h.offer((100 << 16) | 9);
+        assertEquals((200 << 16) | 3, h.poll());
+        assertEquals((100 << 16) | 9, h.poll());
+        assertEquals((100 << 16) | 7, h.poll());
+    }
+
+    @Test
+    public void testPoll100Randomized() throws Exception {
+        for (int seed = 0; seed < 100; seed++) {
+            Random r = new Random(seed);
+            IntMaxHeap h = new IntMaxHeap(0);
+            int[] t = r.ints(500).toArray();
+            for (int x : t) {
+                h.offer(x);
+            }
+            Arrays.sort(t);
+            for (int i = t.length - 1; i >= 0; i--) {
+                assertEquals(t[i], h.poll());
+            }
+        }
+    }
+}
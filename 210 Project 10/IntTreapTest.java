@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import static org.junit.Assert.*;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+
+public class IntTreapTest {
+
+   private static boolean isValid(IntTreap t, int n, int p, long lo, long hi) {
+      if (n == IntTreap.NIL) {
+         return true;
+      }
+      if (t.parent[n] != p || (p != IntTreap.NIL && t.priority[n] > t.priority[p])) {
+         return false;
+      }
+      if (t.key[n] <= lo || t.key[n] >= hi) {
+         return false;
+      }
+      return isValid(t, t.left[n], n, lo, t.key[n]) && isValid(t, t.right[n], n, t.key[n], hi);
+   }
+
+   private static void assertValid(IntTreap t, TreeSet<Integer> expected) {
+      assertTrue(isValid(t, t.root, IntTreap.NIL, Long.MIN_VALUE, Long.MAX_VALUE));
+      assertEquals(expected.size(), t.size());
+      assertArrayEquals(expected.stream().mapToInt(i -> i).toArray(), t.toArray());
+   }
+
+   @Test
+   public void testAgainstTreeSet100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         IntTreap t = new IntTreap(0);
+         TreeSet<Integer> expected = new TreeSet<>();
+         for (int i = 0; i < 500; i++) {
+            int x = r.nextInt(200) - 100;
+            switch (r.nextInt(3)) {
+            case 0:
+               assertEquals(expected.remove(x), t.remove(x));
+               break;
+            case 1:
+               assertEquals(expected.add(x), t.add(x));
+               break;
+            default:
+               assertEquals(expected.contains(x), t.contains(x));
+            }
+         }
+         assertValid(t, expected);
+         if (!expected.isEmpty()) {
+            assertEquals((int) expected.first(), t.first());
+            assertEquals((int) expected.last(), t.last());
+         }
+      }
+   }
+
+   @Test
+   public void testSlotsAreReused() throws Exception {
+      IntTreap t = new IntTreap();
+      for (int i = 0; i < 1000; i++) {
+         t.add(i);
+      }
+      int capacity = t.key.length;
+      for (int round = 0; round < 100; round++) {
+         for (int i = 0; i < 1000; i += 2) {
+            assertTrue(t.remove(i));
+         }
+         for (int i = 0; i < 1000; i += 2) {
+            assertTrue(t.add(i));
+         }
+      }
+      assertEquals(1000, t.used);
+      assertEquals(capacity, t.key.length);
+      TreeSet<Integer> expected = new TreeSet<>();
+      for (int i = 0; i < 1000; i++) {
+         expected.add(i);
+      }
+      assertValid(t, expected);
+   }
+
+   @Test
+   public void testClear() throws Exception {
+      IntTreap t = new IntTreap();
+      t.add(1);
+      t.add(2);
+      t.clear();
+      assertTrue(t.isEmpty());
+      assertFalse(t.contains(1));
+      t.add(3);
+      assertArrayEquals(new int[] { 3 }, t.toArray());
+   }
+
+   @Test(expected = NoSuchElementException.class)
+   public void testFirstEmpty() throws Exception {
+      new IntTreap().first();
+   }
+}
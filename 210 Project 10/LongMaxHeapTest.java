@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class LongMaxHeapTest {
+
+    @Test
+    public void testPackedKeys() throws Exception {
+        // timestamp in the high 32 bits, id in the low 32 bits
+        LongMaxHeap h = new LongMaxHeap();
+        h.offer((100L << 32) | 7);
+        h.offer((200L << 32) | 3);
+        h.offer((100L << 32) | 9);
+        assertEquals((200L << 32) | 3, h.poll());
+        assertEquals((100L << 32) | 9, h.poll());
+        assertEquals((100L << 32) | 7, h.poll());
+    }
+
+    @Test
+    public void testPoll100Randomized() throws Exception {
+        for (int seed = 0; seed < 100; seed++) {
+            Random r = new Random(seed);
+            LongMaxHeap h = new LongMaxHeap(0);
+            long[] t = r.longs(500).toArray();
+            for (long x : t) {
+                h.offer(x);
+            }
+            Arrays.sort(t);
+            for (int i = t.length - 1; i >= 0; i--) {
+                assertEquals(t[i], h.poll());
+            }
+        }
+    }
+}
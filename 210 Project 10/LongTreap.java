@@ -0,0 +1,275 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A treap of primitive long keys, stored as a struct of arrays.
+ *
+ * There are no node objects. Node i is the i-th slot of five parallel
+ * arrays: its key, its priority, and the indices of its left child, right
+ * child and parent, with NIL for none. That is 24 bytes per key, against
+ * roughly 56 for a Treap<Long> once the Node and Long headers and
+ * references are counted, and a lookup reads from a handful of dense arrays
+ * instead of chasing objects scattered around the heap.
+ *
+ * Removed slots go on a free list, linked through the left array, and are
+ * reused before the arrays grow. No operation allocates other than the
+ * occasional array growth in add.
+ */
+public class LongTreap {
+    static final int NIL = -1;
+    static final int DEFAULT_CAPACITY = 16;
+
+    long[] key;
+    int[] priority;
+    int[] left;
+    int[] right;
+    int[] parent;
+    int root = NIL;
+    int size;
+    // slots ever handed out; those below used that are not in the tree are free
+    int used;
+    int free = NIL;
+
+    public LongTreap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongTreap(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("negative capacity: " + initialCapacity);
+        }
+        key = new long[initialCapacity];
+        priority = new int[initialCapacity];
+        left = new int[initialCapacity];
+        right = new int[initialCapacity];
+        parent = new int[initialCapacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all keys. The arrays are kept.
+     */
+    public void clear() {
+        root = NIL;
+        size = 0;
+        used = 0;
+        free = NIL;
+    }
+
+    /**
+     * Make sure the arrays can hold minCapacity keys without further growth.
+     * @param minCapacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > key.length) {
+            grow(minCapacity);
+        }
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, key.length + (key.length >> 1));
+        key = Arrays.copyOf(key, capacity);
+        priority = Arrays.copyOf(priority, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+    }
+
+    private int allocate(long k, int p) {
+        int n;
+        if (free != NIL) {
+            n = free;
+            free = left[n];
+        } else {
+            if (used == key.length) {
+                grow(used + 1);
+            }
+            n = used++;
+        }
+        key[n] = k;
+        priority[n] = ThreadLocalRandom.current().nextInt();
+        left[n] = NIL;
+        right[n] = NIL;
+        parent[n] = p;
+        return n;
+    }
+
+    private void release(int n) {
+        left[n] = free;
+        free = n;
+    }
+
+    private int find(long k) {
+        int n = root;
+        while (n != NIL && key[n] != k) {
+            n = k < key[n] ? left[n] : right[n];
+        }
+        return n;
+    }
+
+    public boolean contains(long k) {
+        return find(k) != NIL;
+    }
+
+    /**
+     * Add the key k, if it is not already present.
+     * @param k
+     * @return true iff k was added
+     */
+    public boolean add(long k) {
+        if (root == NIL) {
+            root = allocate(k, NIL);
+            size = 1;
+            return true;
+        }
+        int n = root;
+        while (true) {
+            if (k == key[n]) {
+                return false;
+            }
+            int next = k < key[n] ? left[n] : right[n];
+            if (next == NIL) {
+                int m = allocate(k, n);
+                if (k < key[n]) {
+                    left[n] = m;
+                } else {
+                    right[n] = m;
+                }
+                while (parent[m] != NIL && priority[m] > priority[parent[m]]) {
+                    rotateUp(m);
+                }
+                size++;
+                return true;
+            }
+            n = next;
+        }
+    }
+
+    /**
+     * Remove the key k, if it is present, by rotating it down below its
+     * higher-priority child until it has at most one child.
+     * @param k
+     * @return true iff k was removed
+     */
+    public boolean remove(long k) {
+        int n = find(k);
+        if (n == NIL) {
+            return false;
+        }
+        while (left[n] != NIL && right[n] != NIL) {
+            rotateUp(priority[left[n]] > priority[right[n]] ? left[n] : right[n]);
+        }
+        int child = left[n] != NIL ? left[n] : right[n];
+        int p = parent[n];
+        if (child != NIL) {
+            parent[child] = p;
+        }
+        replaceChild(p, n, child);
+        release(n);
+        size--;
+        return true;
+    }
+
+    /**
+     * Rotate x above its parent, keeping the in-order sequence.
+     */
+    private void rotateUp(int x) {
+        int p = parent[x];
+        int g = parent[p];
+        if (x == left[p]) {
+            left[p] = right[x];
+            if (right[x] != NIL) {
+                parent[right[x]] = p;
+            }
+            right[x] = p;
+        } else {
+            right[p] = left[x];
+            if (left[x] != NIL) {
+                parent[left[x]] = p;
+            }
+            left[x] = p;
+        }
+        parent[p] = x;
+        parent[x] = g;
+        replaceChild(g, p, x);
+    }
+
+    private void replaceChild(int p, int old, int n) {
+        if (p == NIL) {
+            root = n;
+        } else if (left[p] == old) {
+            left[p] = n;
+        } else {
+            right[p] = n;
+        }
+    }
+
+    /**
+     * @return the smallest key
+     * @throws NoSuchElementException if the treap is empty
+     */
+    public long first() {
+        if (root == NIL) {
+            throw new NoSuchElementException();
+        }
+        return key[leftmost(root)];
+    }
+
+    /**
+     * @return the largest key
+     * @throws NoSuchElementException if the treap is empty
+     */
+    public long last() {
+        if (root == NIL) {
+            throw new NoSuchElementException();
+        }
+        int n = root;
+        while (right[n] != NIL) {
+            n = right[n];
+        }
+        return key[n];
+    }
+
+    private int leftmost(int n) {
+        while (left[n] != NIL) {
+            n = left[n];
+        }
+        return n;
+    }
+
+    private int successor(int n) {
+        if (right[n] != NIL) {
+            return leftmost(right[n]);
+        }
+        while (parent[n] != NIL && n == right[parent[n]]) {
+            n = parent[n];
+        }
+        return parent[n];
+    }
+
+    /**
+     * @return the keys in ascending order
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        int i = 0;
+        for (int n = root == NIL ? NIL : leftmost(root); n != NIL; n = successor(n)) {
+            result[i++] = key[n];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+
+public class LongTreapTest {
+
+   @Test
+   public void testAgainstTreeSet100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         LongTreap t = new LongTreap();
+         TreeSet<Long> expected = new TreeSet<>();
+         for (int i = 0; i < 500; i++) {
+            // keys far outside the int range, a few hundred apart
+            long x = Long.MAX_VALUE / 2 + r.nextInt(200) * 300L;
+            if (r.nextInt(3) == 0) {
+               assertEquals(expected.remove(x), t.remove(x));
+            } else {
+               assertEquals(expected.add(x), t.add(x));
+            }
+         }
+         assertEquals(expected.size(), t.size());
+         assertArrayEquals(expected.stream().mapToLong(i -> i).toArray(), t.toArray());
+         for (long x : expected) {
+            assertTrue(t.contains(x));
+            assertFalse(t.contains(x + 1));
+         }
+      }
+   }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ * A growable max-priority queue of objects, ordered by a Comparator.
+ *
+ * This is DoubleMaxHeap for objects: poll returns the greatest element
+ * according to the comparator. Pass a reversed comparator for a min-queue.
+ *
+ * @param <E> the type of the elements in the queue
+ */
+public class MaxHeap<E> {
+    static final int DEFAULT_CAPACITY = 16;
+
+    final Comparator<? super E> c;
+    // an Object[] rather than an E[], as in ArrayList, so that the array's
+    // runtime type never disagrees with its static type; see elements()
+    Object[] a;
+    int size;
+
+    public MaxHeap(Comparator<? super E> c) {
+        this(DEFAULT_CAPACITY, c);
+    }
+
+    public MaxHeap(int initialCapacity, Comparator<? super E> c) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("negative capacity: " + initialCapacity);
+        }
+        this.c = c;
+        a = new Object[initialCapacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all elements from the queue. The backing array is kept.
+     */
+    public void clear() {
+        Arrays.fill(a, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Add the element e to the queue.
+     * @param e
+     */
+    public void offer(E e) {
+        if (size == a.length) {
+            grow(size + 1);
+        }
+        a[size] = e;
+        HeapUtilities.siftUp(elements(), size, c);
+        size++;
+    }
+
+    /**
+     * Return, but do not remove, the greatest element in the queue.
+     * @return the greatest element in the queue
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public E peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return elements()[0];
+    }
+
+    /**
+     * Remove and return the greatest element in the queue.
+     * @return the greatest element in the queue
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public E poll() {
+        E top = peek();
+        size--;
+        a[0] = a[size];
+        a[size] = null;
+        if (size > 0) {
+            HeapUtilities.siftDown(elements(), 0, size, c);
+        }
+        return top;
+    }
+
+    /**
+     * Remove the greatest element in the queue and add e in its place.
+     * @param e
+     * @return the greatest element in the queue before e was added
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public E replaceTop(E e) {
+        E top = peek();
+        a[0] = e;
+        HeapUtilities.siftDown(elements(), 0, size, c);
+        return top;
+    }
+
+    /**
+     * Add e to the queue, then remove and return the greatest element.
+     * @param e
+     * @return the greatest element among e and the elements in the queue
+     */
+    public E pushPop(E e) {
+        if (size == 0 || c.compare(e, elements()[0]) >= 0) {
+            return e;
+        }
+        E top = elements()[0];
+        a[0] = e;
+        HeapUtilities.siftDown(elements(), 0, size, c);
+        return top;
+    }
+
+    /**
+     * Grow the backing array, if needed, so it can hold at least
+     * minCapacity elements without further growth.
+     * @param minCapacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > a.length) {
+            grow(minCapacity);
+        }
+    }
+
+    /**
+     * Shrink the backing array to exactly the number of elements in the queue.
+     */
+    public void trimToSize() {
+        if (a.length > size) {
+            a = Arrays.copyOf(a, size);
+        }
+    }
+
+    /**
+     * The backing array, typed for the generic sifts in HeapUtilities.
+     * This is safe since E erases to Object within this class.
+     */
+    @SuppressWarnings("unchecked")
+    private E[] elements() {
+        return (E[]) a;
+    }
+
+    private void grow(int minCapacity) {
+        a = Arrays.copyOf(a, HeapUtilities.newCapacity(a.length, minCapacity));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class MaxHeapTest {
+
+    @Test
+    public void testPollOrder() throws Exception {
+        MaxHeap<String> h = new MaxHeap<>(Comparator.naturalOrder());
+        h.offer("b");
+        h.offer("c");
+        h.offer("a");
+        assertEquals("c", h.poll());
+        assertEquals("b", h.poll());
+        assertEquals("a", h.poll());
+        assertTrue(h.isEmpty());
+        assertNull(h.a[0]);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testPeekEmpty() throws Exception {
+        new MaxHeap<String>(Comparator.naturalOrder()).peek();
+    }
+
+    @Test
+    public void testReversedMatchesPriorityQueue100Randomized() throws Exception {
+        for (int seed = 0; seed < 100; seed++) {
+            Random r = new Random(seed);
+            MaxHeap<Integer> h = new MaxHeap<>(0, Comparator.reverseOrder());
+            PriorityQueue<Integer> q = new PriorityQueue<>();
+            for (int i = 0; i < 200; i++) {
+                int x = r.nextInt(100);
+                if (r.nextInt(3) == 0 && !q.isEmpty()) {
+                    assertEquals(q.poll(), h.poll());
+                } else {
+                    q.add(x);
+                    h.offer(x);
+                }
+                assertEquals(q.size(), h.size());
+            }
+        }
+    }
+
+    @Test
+    public void testPushPopReplaceTop() throws Exception {
+        MaxHeap<Integer> h = new MaxHeap<>(Comparator.naturalOrder());
+        h.offer(3);
+        h.offer(1);
+        assertEquals(Integer.valueOf(4), h.pushPop(4));
+        assertEquals(Integer.valueOf(3), h.pushPop(2));
+        assertEquals(Integer.valueOf(2), h.replaceTop(0));
+        assertEquals(Integer.valueOf(1), h.peek());
+    }
+}
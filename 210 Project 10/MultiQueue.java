@@ -0,0 +1,160 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A relaxed concurrent max-priority queue of doubles: a MultiQueue.
+ *
+ * The queue is made of several DoubleMaxHeaps, each behind its own lock.
+ * offer adds to a randomly chosen heap, and poll removes the top of the
+ * better of two randomly chosen heaps; both use tryLock and simply choose
+ * again if the heap is busy, so threads rarely wait on each other.
+ *
+ * The price is that poll does not always return the largest value in the
+ * queue, only one that is close to the top: with c heaps per thread, the
+ * expected rank of the value returned is O(c * threads). Use it where
+ * approximate priority order is acceptable, such as scheduling or
+ * best-first search, and where a single locked heap would serialize the
+ * threads.
+ *
+ * NaN cannot be offered, because poll returns NaN to mean the queue is empty.
+ */
+public class MultiQueue {
+    /**
+     * One of the heaps, with its top and size published for lock-free
+     * sampling by poll.
+     */
+    static final class SubQueue extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        final DoubleMaxHeap heap = new DoubleMaxHeap();
+        volatile double top;
+        volatile int size;
+
+        // call with the lock held, after changing heap
+        void publish() {
+            size = heap.size();
+            if (size > 0) {
+                top = heap.peek();
+            }
+        }
+    }
+
+    final SubQueue[] queues;
+
+    /**
+     * @param queues the number of internal heaps; twice the number of
+     * threads using the queue is a good default (see forThreads)
+     */
+    public MultiQueue(int queues) {
+        if (queues < 1) {
+            throw new IllegalArgumentException("need at least one queue: " + queues);
+        }
+        this.queues = new SubQueue[queues];
+        for (int i = 0; i < queues; i++) {
+            this.queues[i] = new SubQueue();
+        }
+    }
+
+    /**
+     * @param threads the number of threads that will use the queue
+     * @return a queue with two internal heaps per thread
+     */
+    public static MultiQueue forThreads(int threads) {
+        return new MultiQueue(2 * threads);
+    }
+
+    /**
+     * Add the value x to the queue.
+     * @param x
+     * @throws IllegalArgumentException if x is NaN
+     */
+    public void offer(double x) {
+        if (Double.isNaN(x)) {
+            throw new IllegalArgumentException("cannot offer NaN");
+        }
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        while (true) {
+            SubQueue q = queues[r.nextInt(queues.length)];
+            if (q.tryLock()) {
+                try {
+                    q.heap.offer(x);
+                    q.publish();
+                    return;
+                } finally {
+                    q.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove and return a value from near the top of the queue.
+     * @return a large value in the queue, or NaN if the queue is empty
+     */
+    public double poll() {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        while (true) {
+            SubQueue a = queues[r.nextInt(queues.length)];
+            SubQueue b = queues[r.nextInt(queues.length)];
+            SubQueue q;
+            if (a.size == 0) {
+                q = b;
+            } else if (b.size == 0) {
+                q = a;
+            } else {
+                q = a.top >= b.top ? a : b;
+            }
+            if (q.size == 0) {
+                if (isEmpty()) {
+                    return Double.NaN;
+                }
+                continue;
+            }
+            if (q.tryLock()) {
+                try {
+                    // the heap may have emptied since we sampled it
+                    if (!q.heap.isEmpty()) {
+                        double x = q.heap.poll();
+                        q.publish();
+                        return x;
+                    }
+                } finally {
+                    q.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true iff every internal heap is empty. Under concurrent
+     * offers this is only a snapshot, and may be stale by the time it returns.
+     * @return true iff the queue is empty
+     */
+    public boolean isEmpty() {
+        for (SubQueue q : queues) {
+            if (q.size != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of values in the queue. Under concurrent updates
+     * this is only an estimate.
+     * @return the number of values in the queue
+     */
+    public int size() {
+        int n = 0;
+        for (SubQueue q : queues) {
+            n += q.size;
+        }
+        return n;
+    }
+}
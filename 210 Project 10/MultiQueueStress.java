@@ -0,0 +1,171 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures MultiQueue throughput and rank error as the thread count grows,
+ * against a single DoubleMaxHeap behind one lock.
+ *
+ * Usage: MultiQueueStress [millis per run] [values for rank error]
+ */
+public class MultiQueueStress {
+
+    /**
+     * The operations a throughput run performs, so the same loop can drive
+     * both a MultiQueue and the single-lock baseline.
+     */
+    interface Queue {
+        void offer(double x);
+
+        double poll();
+    }
+
+    static Queue multiQueue(int threads) {
+        MultiQueue q = MultiQueue.forThreads(threads);
+        return new Queue() {
+            public void offer(double x) {
+                q.offer(x);
+            }
+
+            public double poll() {
+                return q.poll();
+            }
+        };
+    }
+
+    static Queue lockedHeap() {
+        DoubleMaxHeap h = new DoubleMaxHeap();
+        return new Queue() {
+            public synchronized void offer(double x) {
+                h.offer(x);
+            }
+
+            public synchronized double poll() {
+                return h.isEmpty() ? Double.NaN : h.poll();
+            }
+        };
+    }
+
+    /**
+     * Prefill q, then have each thread alternate offer and poll for the
+     * given time.
+     * @return the total operations per second across all threads
+     */
+    static double throughput(Queue q, int threads, int prefill, long millis) throws InterruptedException {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        for (int i = 0; i < prefill; i++) {
+            q.offer(r.nextDouble());
+        }
+        AtomicLong ops = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom tr = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long n = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    for (int i = 0; i < 64; i++) {
+                        q.offer(tr.nextDouble());
+                        q.poll();
+                    }
+                    n += 128;
+                }
+                ops.addAndGet(n);
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + millis * 1_000_000;
+        start.countDown();
+        for (Thread w : workers) {
+            w.join();
+        }
+        return ops.get() / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    /**
+     * Fill q with the values 0 to n-1, then have the threads poll it empty
+     * concurrently. Each poll takes a ticket just after it returns, and the
+     * polls are replayed in ticket order to find how many larger values were
+     * still in the queue when each value was removed (its rank error; a
+     * strict priority queue always scores 0).
+     * @return the mean and the maximum rank error
+     */
+    static double[] rankError(MultiQueue q, int threads, int n) throws InterruptedException {
+        for (int i = 0; i < n; i++) {
+            q.offer(i);
+        }
+        int[] byTicket = new int[n];
+        AtomicInteger tickets = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                double x;
+                while (!Double.isNaN(x = q.poll())) {
+                    byTicket[tickets.getAndIncrement()] = (int) x;
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+
+        // present[v] counts whether v is still queued, as a Fenwick tree
+        int[] fenwick = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            for (int i = v + 1; i <= n; i += i & -i) {
+                fenwick[i]++;
+            }
+        }
+        long total = 0;
+        int max = 0;
+        for (int k = 0; k < n; k++) {
+            int v = byTicket[k];
+            // the number of queued values <= v
+            int atMost = 0;
+            for (int i = v + 1; i > 0; i -= i & -i) {
+                atMost += fenwick[i];
+            }
+            int rank = (n - k) - atMost;
+            total += rank;
+            max = Math.max(max, rank);
+            for (int i = v + 1; i <= n; i += i & -i) {
+                fenwick[i]--;
+            }
+        }
+        return new double[] { (double) total / n, max };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        int values = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+
+        System.out.println(String.format("%8s %14s %14s %12s %12s",
+                "threads", "locked ops/s", "multi ops/s", "mean rank", "max rank"));
+        for (int p = 1; ; p = Math.min(p * 2, maxThreads)) {
+            double locked = throughput(lockedHeap(), p, 100_000, millis);
+            double multi = throughput(multiQueue(p), p, 100_000, millis);
+            double[] rank = rankError(MultiQueue.forThreads(p), p, values);
+            System.out.println(String.format("%8d %14.0f %14.0f %12.1f %12.0f",
+                    p, locked, multi, rank[0], rank[1]));
+            if (p == maxThreads) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+
+public class MultiQueueTest {
+
+    @Test
+    public void testSingleQueueIsExact() throws Exception {
+        MultiQueue q = new MultiQueue(1);
+        q.offer(1.0);
+        q.offer(3.0);
+        q.offer(2.0);
+        assertEquals(3, q.size());
+        assertEquals(3.0, q.poll(), 0);
+        assertEquals(2.0, q.poll(), 0);
+        assertEquals(1.0, q.poll(), 0);
+        assertTrue(Double.isNaN(q.poll()));
+        assertTrue(q.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfferNaN() throws Exception {
+        new MultiQueue(2).offer(Double.NaN);
+    }
+
+    @Test
+    public void testEveryValuePolledOnce() throws Exception {
+        final int threads = 8;
+        final int perThread = 20_000;
+        MultiQueue q = MultiQueue.forThreads(threads);
+        double[] polled = new double[threads * perThread];
+        AtomicInteger next = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    q.offer(id * perThread + i);
+                    // poll about half the time, leaving the rest for below
+                    if (i % 2 == 0) {
+                        double x = q.poll();
+                        if (!Double.isNaN(x)) {
+                            polled[next.getAndIncrement()] = x;
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        double x;
+        while (!Double.isNaN(x = q.poll())) {
+            polled[next.getAndIncrement()] = x;
+        }
+        assertEquals(polled.length, next.get());
+        Arrays.sort(polled);
+        for (int i = 0; i < polled.length; i++) {
+            assertEquals(i, polled[i], 0);
+        }
+    }
+
+    @Test
+    public void testRankErrorStress() throws Exception {
+        // with more threads than cores, a thread can be descheduled while it
+        // holds a heap's lock, hiding that heap's top from the others for a
+        // whole time slice; the bound below only holds without that
+        int maxThreads = Math.min(8, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double[] rank = MultiQueueStress.rankError(MultiQueue.forThreads(threads), threads, 100_000);
+            // the expected rank error is on the order of the number of heaps
+            assertTrue("mean rank error " + rank[0] + " with " + threads + " threads",
+                    rank[0] < 10 * 2 * threads);
+        }
+    }
+}
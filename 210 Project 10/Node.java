@@ -0,0 +1,52 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import java.util.Random;
+
+/**
+ * A node of a Treap: a value, a random heap priority, and links to the
+ * node's children and parent.
+ *
+ * Each node also records the size of the subtree rooted at it (itself
+ * included), which Treap keeps up to date through adds and rotations so
+ * that order statistics take O(log n).
+ */
+public class Node<E> {
+    static final Random random = new Random();
+
+    E data;
+    double priority;
+    Node<E> left;
+    Node<E> right;
+    Node<E> parent;
+    int size = 1;
+
+    Node(E data) {
+        this.data = data;
+        this.priority = random.nextDouble();
+    }
+
+    Node(E data, double priority) {
+        this.data = data;
+        this.priority = priority;
+    }
+
+    Node(E data, Node<E> parent) {
+        this(data);
+        this.parent = parent;
+    }
+
+    static int size(Node<?> n) {
+        return n == null ? 0 : n.size;
+    }
+
+    /**
+     * Recompute this node's size from its children's.
+     */
+    void updateSize() {
+        size = size(left) + size(right) + 1;
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * A fixed-capacity max-heap of doubles stored outside the Java heap, with
+ * long indices so it can hold more than 2^31 values.
+ *
+ * The values live in a series of DoubleBuffer segments, each a view of
+ * either direct memory (allocateDirect) or a region of a memory-mapped
+ * file (create, open). A mapped heap keeps its size and whether it is
+ * currently heap-ordered in a small header at the start of the file, so
+ * a heap that was flushed with force() can be reopened after a restart
+ * and used straight away, without heapifying it again.
+ *
+ * Values can be appended in bulk with add, which does not maintain heap
+ * order; the next offer, peek or poll heapifies first.
+ *
+ * Direct memory and file mappings are released when the buffers are
+ * garbage collected; close() only releases the file channel.
+ */
+public class OffHeapDoubleHeap implements Closeable {
+    static final long MAGIC = 0x4845415044424c31L; // "HEAPDBL1"
+    static final int HEADER_BYTES = 64;
+    static final int CAPACITY_OFFSET = 8;
+    static final int SIZE_OFFSET = 16;
+    static final int FLAGS_OFFSET = 24;
+    static final long FLAG_HEAP_ORDERED = 1;
+    static final long FLAG_LITTLE_ENDIAN = 2;
+    // 2^27 doubles is a 1 GiB segment, comfortably under the 2 GiB limit
+    // on a single ByteBuffer or file mapping
+    static final int DEFAULT_SEGMENT_SHIFT = 27;
+
+    final FileChannel channel;
+    final ByteBuffer header;
+    // the file mappings behind segments, kept for force(); null in direct memory
+    final MappedByteBuffer[] regions;
+    final DoubleBuffer[] segments;
+    final int segmentShift;
+    final long segmentMask;
+    final long capacity;
+    long size;
+    boolean heapOrdered;
+
+    private OffHeapDoubleHeap(FileChannel channel, ByteBuffer header, MappedByteBuffer[] regions,
+            DoubleBuffer[] segments, int segmentShift, long capacity) {
+        this.channel = channel;
+        this.header = header;
+        this.regions = regions;
+        this.segments = segments;
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1L << segmentShift) - 1;
+        this.capacity = capacity;
+        this.size = header.getLong(SIZE_OFFSET);
+        this.heapOrdered = (header.getLong(FLAGS_OFFSET) & FLAG_HEAP_ORDERED) != 0;
+    }
+
+    /**
+     * Create an empty heap in direct (off-heap, non-file-backed) memory.
+     * @param capacity the number of values the heap can hold
+     * @return the new heap
+     */
+    public static OffHeapDoubleHeap allocateDirect(long capacity) {
+        return allocateDirect(capacity, DEFAULT_SEGMENT_SHIFT);
+    }
+
+    static OffHeapDoubleHeap allocateDirect(long capacity, int segmentShift) {
+        checkCapacity(capacity);
+        ByteBuffer header = ByteBuffer.allocateDirect(HEADER_BYTES);
+        writeHeader(header, capacity);
+        int count = segmentCount(capacity, segmentShift);
+        DoubleBuffer[] segments = new DoubleBuffer[count];
+        for (int s = 0; s < count; s++) {
+            int length = segmentLength(capacity, segmentShift, s);
+            segments[s] = ByteBuffer.allocateDirect(length * Double.BYTES)
+                    .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+        return new OffHeapDoubleHeap(null, header, null, segments, segmentShift, capacity);
+    }
+
+    /**
+     * Create an empty heap backed by a memory-mapped file, replacing the
+     * file if it exists.
+     * @param file the file to map
+     * @param capacity the number of values the heap can hold
+     * @return the new heap
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static OffHeapDoubleHeap create(Path file, long capacity) throws IOException {
+        return create(file, capacity, DEFAULT_SEGMENT_SHIFT);
+    }
+
+    static OffHeapDoubleHeap create(Path file, long capacity, int segmentShift) throws IOException {
+        checkCapacity(capacity);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            writeHeader(header, capacity);
+            return map(channel, header, capacity, segmentShift);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reopen a heap previously made by create. Its size, contents and heap
+     * order are exactly as they were when it was last flushed.
+     * @param file the file to map
+     * @return the reopened heap
+     * @throws IOException if the file cannot be mapped or is not a heap file
+     */
+    public static OffHeapDoubleHeap open(Path file) throws IOException {
+        return open(file, DEFAULT_SEGMENT_SHIFT);
+    }
+
+    static OffHeapDoubleHeap open(Path file, int segmentShift) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("not a heap file (too short): " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            if (header.getLong(0) != MAGIC) {
+                throw new IOException("not a heap file (bad magic): " + file);
+            }
+            long capacity = header.getLong(CAPACITY_OFFSET);
+            long size = header.getLong(SIZE_OFFSET);
+            // bound capacity first, so the file length below cannot overflow
+            if (capacity < 0 || capacity > (Long.MAX_VALUE - HEADER_BYTES) / Double.BYTES
+                    || size < 0 || size > capacity
+                    || channel.size() < HEADER_BYTES + capacity * Double.BYTES) {
+                throw new IOException("corrupt heap file header: " + file);
+            }
+            return map(channel, header, capacity, segmentShift);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static OffHeapDoubleHeap map(FileChannel channel, ByteBuffer header, long capacity,
+            int segmentShift) throws IOException {
+        ByteOrder order = (header.getLong(FLAGS_OFFSET) & FLAG_LITTLE_ENDIAN) != 0
+                ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        int count = segmentCount(capacity, segmentShift);
+        MappedByteBuffer[] regions = new MappedByteBuffer[count];
+        DoubleBuffer[] segments = new DoubleBuffer[count];
+        for (int s = 0; s < count; s++) {
+            long position = HEADER_BYTES + ((long) s << segmentShift) * Double.BYTES;
+            long bytes = (long) segmentLength(capacity, segmentShift, s) * Double.BYTES;
+            regions[s] = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes);
+            segments[s] = regions[s].order(order).asDoubleBuffer();
+        }
+        return new OffHeapDoubleHeap(channel, header, regions, segments, segmentShift, capacity);
+    }
+
+    private static void checkCapacity(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("negative capacity: " + capacity);
+        }
+    }
+
+    private static void writeHeader(ByteBuffer header, long capacity) {
+        header.putLong(0, MAGIC);
+        header.putLong(CAPACITY_OFFSET, capacity);
+        header.putLong(SIZE_OFFSET, 0);
+        // an empty heap is trivially heap-ordered
+        long flags = FLAG_HEAP_ORDERED;
+        if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+            flags |= FLAG_LITTLE_ENDIAN;
+        }
+        header.putLong(FLAGS_OFFSET, flags);
+    }
+
+    private static int segmentCount(long capacity, int segmentShift) {
+        return (int) ((capacity + (1L << segmentShift) - 1) >>> segmentShift);
+    }
+
+    private static int segmentLength(long capacity, int segmentShift, int s) {
+        return (int) Math.min(1L << segmentShift, capacity - ((long) s << segmentShift));
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the value at index i. Indices follow the usual heap layout
+     * while the heap is ordered, and ascending order after heapSort.
+     * @param i
+     * @return the value at index i
+     */
+    public double get(long i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + " out of bounds for size " + size);
+        }
+        return read(i);
+    }
+
+    double read(long i) {
+        return segments[(int) (i >>> segmentShift)].get((int) (i & segmentMask));
+    }
+
+    void write(long i, double x) {
+        segments[(int) (i >>> segmentShift)].put((int) (i & segmentMask), x);
+    }
+
+    void swap(long i, long j) {
+        double t = read(i);
+        write(i, read(j));
+        write(j, t);
+    }
+
+    private void setSize(long size) {
+        this.size = size;
+        header.putLong(SIZE_OFFSET, size);
+    }
+
+    private void setHeapOrdered(boolean heapOrdered) {
+        this.heapOrdered = heapOrdered;
+        long flags = header.getLong(FLAGS_OFFSET);
+        header.putLong(FLAGS_OFFSET, heapOrdered ? flags | FLAG_HEAP_ORDERED : flags & ~FLAG_HEAP_ORDERED);
+    }
+
+    /**
+     * Append x without restoring heap order, for loading values in bulk.
+     * @param x
+     * @throws IllegalStateException if the heap is full
+     */
+    public void add(double x) {
+        if (size == capacity) {
+            throw new IllegalStateException("heap is full: " + capacity);
+        }
+        write(size, x);
+        if (heapOrdered && size > 0) {
+            setHeapOrdered(false);
+        }
+        setSize(size + 1);
+    }
+
+    /**
+     * Add the value x to the heap.
+     * @param x
+     * @throws IllegalStateException if the heap is full
+     */
+    public void offer(double x) {
+        if (size == capacity) {
+            throw new IllegalStateException("heap is full: " + capacity);
+        }
+        ensureHeapOrdered();
+        write(size, x);
+        siftUp(size);
+        setSize(size + 1);
+    }
+
+    /**
+     * Return, but do not remove, the largest value in the heap.
+     * @return the largest value in the heap
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public double peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        ensureHeapOrdered();
+        return read(0);
+    }
+
+    /**
+     * Remove and return the largest value in the heap.
+     * @return the largest value in the heap
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public double poll() {
+        double top = peek();
+        long n = size - 1;
+        write(0, read(n));
+        setSize(n);
+        siftDown(0, n);
+        return top;
+    }
+
+    private void ensureHeapOrdered() {
+        if (!heapOrdered) {
+            heapify();
+        }
+    }
+
+    /**
+     * Perform the heap siftdown operation on index i, bounded by n (exclusive).
+     * This method assumes the subtrees of i are already valid max-heaps.
+     * @param i the index of the element to sift down
+     * @param n the bound on the heap (that is, where to stop sifting)
+     */
+    void siftDown(long i, long n) {
+        double x = read(i);
+        long firstLeaf = n >>> 1;
+        while (i < firstLeaf) {
+            long largestIndex = 2 * i + 1;
+            long r = largestIndex + 1;
+            if (r < n && read(r) > read(largestIndex)) {
+                largestIndex = r;
+            }
+            double largest = read(largestIndex);
+            if (largest <= x) {
+                break;
+            }
+            write(i, largest);
+            i = largestIndex;
+        }
+        write(i, x);
+    }
+
+    /**
+     * Perform the heap siftup operation on index i.
+     * This method assumes [0, i) is already a valid max-heap.
+     * @param i the index of the element to sift up
+     */
+    void siftUp(long i) {
+        double x = read(i);
+        while (i > 0) {
+            long p = (i - 1) / 2;
+            double parent = read(p);
+            if (parent >= x) {
+                break;
+            }
+            write(i, parent);
+            i = p;
+        }
+        write(i, x);
+    }
+
+    /**
+     * Returns true iff the contents are a max-heap. A debugging aid.
+     * @return true iff the contents are a max-heap
+     */
+    boolean isHeap() {
+        for (long i = 1; i < size; i++) {
+            if (read(i) > read((i - 1) / 2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Heapify the contents in-place in linear time as a max-heap.
+     */
+    public void heapify() {
+        for (long i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i, size);
+        }
+        assert isHeap() : "heapify did not produce a max-heap";
+        setHeapOrdered(true);
+    }
+
+    /**
+     * Heapsort the contents in-place, resulting in them being in ascending
+     * order (readable with get). The heap is no longer heap-ordered
+     * afterwards, so the next offer, peek or poll heapifies again.
+     */
+    public void heapSort() {
+        ensureHeapOrdered();
+        for (long i = size - 1; i > 0; i--) {
+            swap(0, i);
+            siftDown(0, i);
+        }
+        setHeapOrdered(size < 2);
+    }
+
+    /**
+     * Write any changes to a memory-mapped heap through to its file. This
+     * does nothing for a heap in direct memory.
+     */
+    public void force() {
+        if (channel == null) {
+            return;
+        }
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        ((MappedByteBuffer) header).force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+        }
+    }
+}
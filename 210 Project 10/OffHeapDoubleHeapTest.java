@@ -0,0 +1,126 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class OffHeapDoubleHeapTest {
+    // small segments, so the tests cross segment boundaries
+    private static final int SHIFT = 4;
+
+    @Test
+    public void testOfferPollDirect() throws Exception {
+        OffHeapDoubleHeap h = OffHeapDoubleHeap.allocateDirect(100, SHIFT);
+        Random r = new Random(0);
+        double[] t = new double[100];
+        for (int i = 0; i < t.length; i++) {
+            t[i] = r.nextInt(50);
+            h.offer(t[i]);
+        }
+        assertTrue(h.isHeap());
+        Arrays.sort(t);
+        for (int i = t.length - 1; i >= 0; i--) {
+            assertEquals(t[i], h.poll(), 0);
+        }
+        assertTrue(h.isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOfferFull() throws Exception {
+        OffHeapDoubleHeap h = OffHeapDoubleHeap.allocateDirect(1, SHIFT);
+        h.offer(1.0);
+        h.offer(2.0);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testPollEmpty() throws Exception {
+        OffHeapDoubleHeap.allocateDirect(1, SHIFT).poll();
+    }
+
+    @Test
+    public void testAddThenHeapSort() throws Exception {
+        OffHeapDoubleHeap h = OffHeapDoubleHeap.allocateDirect(77, SHIFT);
+        Random r = new Random(1);
+        double[] t = new double[77];
+        for (int i = 0; i < t.length; i++) {
+            t[i] = r.nextDouble();
+            h.add(t[i]);
+        }
+        assertFalse(h.heapOrdered);
+        h.heapSort();
+        Arrays.sort(t);
+        for (int i = 0; i < t.length; i++) {
+            assertEquals(t[i], h.get(i), 0);
+        }
+        assertEquals(t[t.length - 1], h.peek(), 0);
+    }
+
+    @Test
+    public void testMappedReopen() throws Exception {
+        Path file = Files.createTempFile("heap", ".bin");
+        try {
+            try (OffHeapDoubleHeap h = OffHeapDoubleHeap.create(file, 50, SHIFT)) {
+                for (int i = 0; i < 40; i++) {
+                    h.offer(i);
+                }
+                h.poll();
+            }
+            try (OffHeapDoubleHeap h = OffHeapDoubleHeap.open(file, SHIFT)) {
+                assertEquals(39, h.size());
+                assertEquals(50, h.capacity());
+                assertTrue(h.heapOrdered);
+                assertTrue(h.isHeap());
+                assertEquals(38.0, h.poll(), 0);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenNotAHeap() throws Exception {
+        Path file = Files.createTempFile("heap", ".bin");
+        try {
+            Files.write(file, new byte[OffHeapDoubleHeap.HEADER_BYTES]);
+            OffHeapDoubleHeap.open(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testOpenOverflowingCapacity() throws Exception {
+        Path file = Files.createTempFile("heap", ".bin");
+        try {
+            OffHeapDoubleHeap.create(file, 10, SHIFT).close();
+            // HEADER_BYTES + capacity * 8 overflows to a negative length
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ByteBuffer b = ByteBuffer.allocate(Long.BYTES).putLong(0, Long.MAX_VALUE / Double.BYTES + 1);
+                channel.write(b, OffHeapDoubleHeap.CAPACITY_OFFSET);
+            }
+            try {
+                OffHeapDoubleHeap.open(file, SHIFT);
+                fail();
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("corrupt heap file header"));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
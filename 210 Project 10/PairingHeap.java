@@ -0,0 +1,307 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A meldable max-heap of doubles: a pairing heap.
+ *
+ * Unlike an array heap, two pairing heaps can be melded in O(1), by making
+ * the root with the smaller key a child of the other root. insert and
+ * increaseKey are also O(1); deleteMax, decreaseKey and remove are
+ * O(log n) amortized, by the usual two-pass pairing of the removed root's
+ * children.
+ *
+ * There are no node objects. Nodes live in parallel arrays in a Pool, and
+ * are reused through a free list. Heaps that will be melded together must
+ * share a Pool; a fan-in of hundreds of heaps then costs one link per meld.
+ * insert returns the node's index in the pool as a handle for
+ * increaseKey, decreaseKey and remove. A handle is only valid until its
+ * value is deleted, and only with the heap that currently holds it.
+ */
+public class PairingHeap {
+    static final int NIL = -1;
+
+    /**
+     * Node storage shared by any number of PairingHeaps.
+     */
+    public static final class Pool {
+        double[] key;
+        // first child of each node
+        int[] child;
+        // next sibling of each node; for a free node, the next free node
+        int[] next;
+        // previous sibling of each node, or its parent if it is a first child
+        int[] prev;
+        int used;
+        int free = NIL;
+
+        public Pool() {
+            this(16);
+        }
+
+        public Pool(int initialCapacity) {
+            key = new double[initialCapacity];
+            child = new int[initialCapacity];
+            next = new int[initialCapacity];
+            prev = new int[initialCapacity];
+        }
+
+        int allocate(double k) {
+            int n;
+            if (free != NIL) {
+                n = free;
+                free = next[n];
+            } else {
+                if (used == key.length) {
+                    int capacity = HeapUtilities.newCapacity(used, used + 1);
+                    key = Arrays.copyOf(key, capacity);
+                    child = Arrays.copyOf(child, capacity);
+                    next = Arrays.copyOf(next, capacity);
+                    prev = Arrays.copyOf(prev, capacity);
+                }
+                n = used++;
+            }
+            key[n] = k;
+            child[n] = NIL;
+            next[n] = NIL;
+            prev[n] = NIL;
+            return n;
+        }
+
+        void release(int n) {
+            next[n] = free;
+            free = n;
+        }
+
+        /**
+         * Make the root with the smaller key the first child of the other.
+         * @return the new root
+         */
+        int link(int a, int b) {
+            if (key[b] > key[a]) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            next[b] = child[a];
+            if (child[a] != NIL) {
+                prev[child[a]] = b;
+            }
+            prev[b] = a;
+            child[a] = b;
+            next[a] = NIL;
+            prev[a] = NIL;
+            return a;
+        }
+
+        /**
+         * Detach the non-root node n, with its subtree, from its parent.
+         */
+        void cut(int n) {
+            int p = prev[n];
+            if (child[p] == n) {
+                child[p] = next[n];
+            } else {
+                next[p] = next[n];
+            }
+            if (next[n] != NIL) {
+                prev[next[n]] = p;
+            }
+            next[n] = NIL;
+            prev[n] = NIL;
+        }
+
+        /**
+         * Two-pass pairing: link the siblings starting at first in pairs from
+         * left to right, then link the pairs into one tree from right to left.
+         * @return the root of the result, or NIL if first is NIL
+         */
+        int combine(int first) {
+            if (first == NIL) {
+                return NIL;
+            }
+            // the first pass pushes each pair's winner onto a stack, linked
+            // through next, so the second pass sees them right to left
+            int stack = NIL;
+            int a = first;
+            while (a != NIL) {
+                int b = next[a];
+                int rest = b == NIL ? NIL : next[b];
+                int m = b == NIL ? a : link(a, b);
+                prev[m] = NIL;
+                next[m] = stack;
+                stack = m;
+                a = rest;
+            }
+            int result = stack;
+            stack = next[result];
+            next[result] = NIL;
+            while (stack != NIL) {
+                int n = next[stack];
+                next[stack] = NIL;
+                result = link(result, stack);
+                stack = n;
+            }
+            return result;
+        }
+    }
+
+    final Pool pool;
+    int root = NIL;
+    int size;
+
+    /**
+     * Create an empty heap with its own pool.
+     */
+    public PairingHeap() {
+        this(new Pool());
+    }
+
+    /**
+     * Create an empty heap whose nodes are stored in pool.
+     * @param pool
+     */
+    public PairingHeap(Pool pool) {
+        this.pool = pool;
+    }
+
+    public Pool pool() {
+        return pool;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Add a value to the heap.
+     * @param key
+     * @return a handle for the new value
+     */
+    public int insert(double key) {
+        int n = pool.allocate(key);
+        root = root == NIL ? n : pool.link(root, n);
+        size++;
+        return n;
+    }
+
+    /**
+     * @param h a handle
+     * @return the value of h
+     */
+    public double keyOf(int h) {
+        return pool.key[h];
+    }
+
+    /**
+     * Return, but do not remove, the largest value in the heap.
+     * @return the largest value in the heap
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public double peek() {
+        if (root == NIL) {
+            throw new NoSuchElementException();
+        }
+        return pool.key[root];
+    }
+
+    /**
+     * Remove and return the largest value in the heap.
+     * @return the largest value in the heap
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public double deleteMax() {
+        double top = peek();
+        int r = root;
+        root = pool.combine(pool.child[r]);
+        pool.release(r);
+        size--;
+        return top;
+    }
+
+    /**
+     * Move every value of other into this heap, leaving other empty. Handles
+     * into other remain valid, now as handles into this heap.
+     * @param other a heap sharing this heap's pool
+     * @throws IllegalArgumentException if other has a different pool
+     */
+    public void meld(PairingHeap other) {
+        if (other.pool != pool) {
+            throw new IllegalArgumentException("can only meld heaps that share a pool");
+        }
+        if (other == this || other.root == NIL) {
+            return;
+        }
+        root = root == NIL ? other.root : pool.link(root, other.root);
+        size += other.size;
+        other.root = NIL;
+        other.size = 0;
+    }
+
+    /**
+     * Raise the value of h.
+     * @param h a handle in this heap
+     * @param key the new value, no smaller than the current one
+     * @throws IllegalArgumentException if key is smaller than the current value
+     */
+    public void increaseKey(int h, double key) {
+        if (key < pool.key[h]) {
+            throw new IllegalArgumentException("new key " + key + " is smaller than " + pool.key[h]);
+        }
+        pool.key[h] = key;
+        if (h != root) {
+            pool.cut(h);
+            root = pool.link(root, h);
+        }
+    }
+
+    /**
+     * Lower the value of h. The handle stays valid.
+     * @param h a handle in this heap
+     * @param key the new value, no greater than the current one
+     * @throws IllegalArgumentException if key is greater than the current value
+     */
+    public void decreaseKey(int h, double key) {
+        if (key > pool.key[h]) {
+            throw new IllegalArgumentException("new key " + key + " is greater than " + pool.key[h]);
+        }
+        detach(h);
+        pool.key[h] = key;
+        root = root == NIL ? h : pool.link(root, h);
+    }
+
+    /**
+     * Remove the value of h from the heap. The handle is no longer valid.
+     * @param h a handle in this heap
+     */
+    public void remove(int h) {
+        detach(h);
+        pool.release(h);
+        size--;
+    }
+
+    /**
+     * Take h out of the tree on its own, melding its children back in.
+     */
+    private void detach(int h) {
+        int children = pool.combine(pool.child[h]);
+        pool.child[h] = NIL;
+        if (h == root) {
+            root = children;
+        } else {
+            pool.cut(h);
+            if (children != NIL) {
+                root = pool.link(root, children);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class PairingHeapTest {
+
+    @Test
+    public void testInsertDeleteMax() throws Exception {
+        PairingHeap h = new PairingHeap();
+        h.insert(2.0);
+        h.insert(5.0);
+        h.insert(1.0);
+        assertEquals(5.0, h.peek(), 0);
+        assertEquals(5.0, h.deleteMax(), 0);
+        assertEquals(2.0, h.deleteMax(), 0);
+        assertEquals(1.0, h.deleteMax(), 0);
+        assertTrue(h.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testDeleteMaxEmpty() throws Exception {
+        new PairingHeap().deleteMax();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMeldDifferentPools() throws Exception {
+        new PairingHeap().meld(new PairingHeap());
+    }
+
+    @Test
+    public void testNodesReused() throws Exception {
+        PairingHeap h = new PairingHeap(new PairingHeap.Pool(4));
+        for (int round = 0; round < 100; round++) {
+            h.insert(1.0);
+            h.insert(2.0);
+            h.deleteMax();
+            h.deleteMax();
+        }
+        assertEquals(2, h.pool().used);
+    }
+
+    @Test
+    public void testMeldHundreds() throws Exception {
+        PairingHeap.Pool pool = new PairingHeap.Pool();
+        Random r = new Random(0);
+        List<Double> all = new ArrayList<>();
+        PairingHeap total = new PairingHeap(pool);
+        for (int i = 0; i < 300; i++) {
+            PairingHeap part = new PairingHeap(pool);
+            for (int j = 0; j < 10; j++) {
+                double x = r.nextInt(1000);
+                part.insert(x);
+                all.add(x);
+            }
+            total.meld(part);
+            assertTrue(part.isEmpty());
+        }
+        Collections.sort(all, Collections.reverseOrder());
+        assertEquals(all.size(), total.size());
+        for (double x : all) {
+            assertEquals(x, total.deleteMax(), 0);
+        }
+    }
+
+    @Test
+    public void testRandomOperations100Randomized() throws Exception {
+        for (int seed = 0; seed < 100; seed++) {
+            Random r = new Random(seed);
+            PairingHeap h = new PairingHeap();
+            PriorityQueue<Double> q = new PriorityQueue<>(Collections.reverseOrder());
+            // live handles and their current keys
+            Map<Integer, Double> live = new HashMap<>();
+            List<Integer> handles = new ArrayList<>();
+            for (int op = 0; op < 300; op++) {
+                int kind = r.nextInt(5);
+                if (kind == 0 || handles.isEmpty()) {
+                    double x = r.nextInt(100);
+                    int handle = h.insert(x);
+                    live.put(handle, x);
+                    handles.add(handle);
+                    q.add(x);
+                } else {
+                    int handle = handles.get(r.nextInt(handles.size()));
+                    double old = live.get(handle);
+                    q.remove(old);
+                    if (kind == 1) {
+                        double x = old + r.nextInt(50);
+                        h.increaseKey(handle, x);
+                        live.put(handle, x);
+                        q.add(x);
+                    } else if (kind == 2) {
+                        double x = old - r.nextInt(50);
+                        h.decreaseKey(handle, x);
+                        live.put(handle, x);
+                        q.add(x);
+                    } else {
+                        h.remove(handle);
+                        live.remove(handle);
+                        handles.remove(Integer.valueOf(handle));
+                    }
+                }
+                assertEquals(q.size(), h.size());
+                if (!q.isEmpty()) {
+                    assertEquals(q.peek(), h.peek(), 0);
+                }
+            }
+            while (!q.isEmpty()) {
+                assertEquals(q.poll(), h.deleteMax(), 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A parallel sort for double[] built from the sequential heap code.
+ *
+ * The array is cut into one run per thread, each run is heapsorted in its
+ * own ForkJoinPool task, and then the sorted runs are merged by repeatedly
+ * taking the smallest run head from a min-heap of runs. The merge needs a
+ * scratch array as large as the input.
+ */
+public class ParallelHeapSort {
+    // below this many elements per run, the cost of the merge outweighs the
+    // benefit of sorting the runs on separate threads
+    static final int MIN_RUN_LENGTH = 1 << 13;
+
+    /**
+     * Sort the array a in ascending order using up to parallelism threads.
+     * @param a
+     * @param parallelism the number of threads to sort with
+     */
+    static void sort(double[] a, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        int runs = Math.min(parallelism, Math.max(1, a.length / MIN_RUN_LENGTH));
+        if (runs == 1) {
+            HeapUtilities.heapSort(a, 0, a.length);
+            return;
+        }
+
+        int[] starts = new int[runs + 1];
+        for (int r = 0; r <= runs; r++) {
+            starts[r] = (int) ((long) a.length * r / runs);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(runs);
+        try {
+            pool.submit(new SortRuns(a, starts, 0, runs)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while sorting runs", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("failed to sort runs", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        double[] out = new double[a.length];
+        mergeRuns(a, starts, out);
+        System.arraycopy(out, 0, a, 0, a.length);
+    }
+
+    /**
+     * Heapsort runs [lo, hi) of a, splitting in half until a single run is left.
+     */
+    static class SortRuns extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final double[] a;
+        final int[] starts;
+        final int lo;
+        final int hi;
+
+        SortRuns(double[] a, int[] starts, int lo, int hi) {
+            this.a = a;
+            this.starts = starts;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                HeapUtilities.heapSort(a, starts[lo], starts[lo + 1]);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SortRuns(a, starts, lo, mid), new SortRuns(a, starts, mid, hi));
+        }
+    }
+
+    /**
+     * Merge the sorted runs a[starts[r]..starts[r+1]-1] into out.
+     *
+     * heap holds the ids of the runs that are not yet exhausted, kept as a
+     * min-heap on the value at each run's cursor pos[r].
+     *
+     * @param a the array of sorted runs
+     * @param starts the start of each run, followed by a.length
+     * @param out where to write the merged result
+     */
+    static void mergeRuns(double[] a, int[] starts, double[] out) {
+        int runs = starts.length - 1;
+        int[] pos = Arrays.copyOf(starts, runs);
+        int[] heap = new int[runs];
+        int n = 0;
+        for (int r = 0; r < runs; r++) {
+            if (starts[r] < starts[r + 1]) {
+                heap[n++] = r;
+            }
+        }
+        for (int i = (n >>> 1) - 1; i >= 0; i--) {
+            siftDownRun(a, pos, heap, i, n);
+        }
+
+        int k = 0;
+        while (n > 0) {
+            int r = heap[0];
+            out[k++] = a[pos[r]];
+            pos[r]++;
+            if (pos[r] == starts[r + 1]) {
+                n--;
+                heap[0] = heap[n];
+            }
+            if (n > 0) {
+                siftDownRun(a, pos, heap, 0, n);
+            }
+        }
+    }
+
+    /**
+     * siftDown for the min-heap of runs in mergeRuns.
+     */
+    private static void siftDownRun(double[] a, int[] pos, int[] heap, int i, int n) {
+        int r = heap[i];
+        double x = a[pos[r]];
+        int firstLeaf = n >>> 1;
+        while (i < firstLeaf) {
+            int smallestIndex = HeapUtilities.left(i);
+            int right = smallestIndex + 1;
+            if (right < n && a[pos[heap[right]]] < a[pos[heap[smallestIndex]]]) {
+                smallestIndex = right;
+            }
+            if (a[pos[heap[smallestIndex]]] >= x) {
+                break;
+            }
+            heap[i] = heap[smallestIndex];
+            i = smallestIndex;
+        }
+        heap[i] = r;
+    }
+
+    /**
+     * Run fn and return its wall-clock time in milliseconds.
+     */
+    private static double time(Runnable fn) {
+        long start = System.nanoTime();
+        fn.run();
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /**
+     * Run fn inside a pool of the given size and return its wall-clock
+     * time in milliseconds.
+     */
+    private static double timeInPool(int parallelism, Runnable fn) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> time(fn)).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Print a scaling report: for each thread count from 1 up to the number
+     * of available processors (doubling each time), the time to sort the
+     * same random array with parallelHeapSort and with Arrays.parallelSort,
+     * and each one's speedup over its own single-threaded time.
+     *
+     * Arrays.parallelSort is run from inside a ForkJoinPool of the given
+     * size, so that its forked subtasks are confined to that pool.
+     *
+     * Usage: ParallelHeapSort [length] [repetitions]
+     */
+    public static void main(String[] args) throws Exception {
+        int length = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int reps = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+
+        Random r = new Random(0);
+        double[] input = new double[length];
+        for (int i = 0; i < length; i++) {
+            input[i] = r.nextDouble();
+        }
+        double[] a = new double[length];
+
+        System.out.println("length=" + length + " reps=" + reps + " (best of reps, ms)");
+        System.out.println(String.format("%8s %12s %8s %14s %8s %8s",
+                "threads", "heapSort", "speedup", "parallelSort", "speedup", "ratio"));
+        double heapBase = 0;
+        double arraysBase = 0;
+        for (int p = 1; ; p = Math.min(p * 2, maxThreads)) {
+            final int threads = p;
+            double heapBest = Double.MAX_VALUE;
+            double arraysBest = Double.MAX_VALUE;
+            for (int rep = 0; rep < reps; rep++) {
+                System.arraycopy(input, 0, a, 0, length);
+                heapBest = Math.min(heapBest, time(() -> sort(a, threads)));
+                System.arraycopy(input, 0, a, 0, length);
+                arraysBest = Math.min(arraysBest, timeInPool(threads, () -> Arrays.parallelSort(a)));
+            }
+            if (p == 1) {
+                heapBase = heapBest;
+                arraysBase = arraysBest;
+            }
+            System.out.println(String.format("%8d %12.1f %8.2f %14.1f %8.2f %8.2f",
+                    p, heapBest, heapBase / heapBest, arraysBest, arraysBase / arraysBest,
+                    heapBest / arraysBest));
+            if (p == maxThreads) {
+                break;
+            }
+        }
+    }
+}
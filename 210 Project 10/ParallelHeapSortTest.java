@@ -0,0 +1,66 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class ParallelHeapSortTest {
+
+    private static double[] randomArray(Random r, int length) {
+        double[] a = new double[length];
+        for (int i = 0; i < length; i++) {
+            a[i] = r.nextInt(length);
+        }
+        return a;
+    }
+
+    @Test
+    public void testHeapSortRange() throws Exception {
+        double[] a = { 9.0, 3.0, 1.0, 2.0, 0.0 };
+        double[] t = { 9.0, 1.0, 2.0, 3.0, 0.0 };
+        HeapUtilities.heapSort(a, 1, 4);
+        assertArrayEquals(t, a, 0);
+    }
+
+    @Test
+    public void testSmallArraySingleRun() throws Exception {
+        double[] a = { 3.0, 1.0, 2.0 };
+        HeapUtilities.parallelHeapSort(a, 4);
+        assertArrayEquals(new double[] { 1.0, 2.0, 3.0 }, a, 0);
+    }
+
+    @Test
+    public void testMergeRunsUneven() throws Exception {
+        double[] a = { 1.0, 4.0, 2.0, 3.0, 5.0, 0.0 };
+        int[] starts = { 0, 2, 2, 5, 6 };
+        double[] out = new double[a.length];
+        ParallelHeapSort.mergeRuns(a, starts, out);
+        assertArrayEquals(new double[] { 0.0, 1.0, 2.0, 3.0, 4.0, 5.0 }, out, 0);
+    }
+
+    @Test
+    public void testParallelHeapSort10Randomized() throws Exception {
+        final int length = 100_000;
+        for (int seed = 0; seed < 10; seed++) {
+            Random r = new Random(seed);
+            double[] a = randomArray(r, length + seed);
+            double[] t = a.clone();
+            Arrays.sort(t);
+            HeapUtilities.parallelHeapSort(a, 1 + seed);
+            assertArrayEquals(t, a, 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroParallelism() throws Exception {
+        HeapUtilities.parallelHeapSort(new double[1], 0);
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A treap whose nodes are never modified once built.
+ *
+ * An update copies just the nodes on the path it changes, O(log n) of them
+ * in expectation, and shares the rest of the tree with the previous
+ * version. Nodes have no parent pointers, which is what makes the sharing
+ * possible. The current root is published through an AtomicReference, so:
+ *
+ * - readers never lock; each read works on whichever version was current
+ *   when it started, and snapshot() hands out a version to keep;
+ * - writers compare-and-set the root, and retry against the new version if
+ *   another writer got there first;
+ * - an old version stays valid, and queryable, for as long as it is held.
+ */
+public class PersistentTreap<E extends Comparable<E>> implements Iterable<E> {
+
+    static final class Node<E> {
+        final E data;
+        final double priority;
+        final Node<E> left;
+        final Node<E> right;
+        final int size;
+
+        Node(E data, double priority, Node<E> left, Node<E> right) {
+            this.data = data;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+        }
+
+        static int size(Node<?> n) {
+            return n == null ? 0 : n.size;
+        }
+    }
+
+    /**
+     * One version of the treap. It never changes.
+     */
+    public static final class Snapshot<E extends Comparable<E>> implements Iterable<E> {
+        final Node<E> root;
+
+        Snapshot(Node<E> root) {
+            this.root = root;
+        }
+
+        public int size() {
+            return Node.size(root);
+        }
+
+        public boolean isEmpty() {
+            return root == null;
+        }
+
+        public boolean contains(E e) {
+            return PersistentTreap.contains(root, e);
+        }
+
+        /**
+         * @param e
+         * @return the number of elements less than e
+         */
+        public int rank(E e) {
+            return PersistentTreap.rank(root, e);
+        }
+
+        /**
+         * @param k
+         * @return the element with k smaller elements
+         * @throws IndexOutOfBoundsException if k is not in [0, size())
+         */
+        public E select(int k) {
+            return PersistentTreap.select(root, k);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new InOrder<>(root);
+        }
+
+        public Stream<E> stream() {
+            return StreamSupport.stream(Spliterators.spliterator(iterator(), size(),
+                    Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE),
+                    false);
+        }
+    }
+
+    private final AtomicReference<Node<E>> root = new AtomicReference<>();
+
+    /**
+     * @return the current version, which later updates will not affect
+     */
+    public Snapshot<E> snapshot() {
+        return new Snapshot<>(root.get());
+    }
+
+    public int size() {
+        return Node.size(root.get());
+    }
+
+    public boolean isEmpty() {
+        return root.get() == null;
+    }
+
+    public boolean contains(E e) {
+        return contains(root.get(), e);
+    }
+
+    /**
+     * Add e to the treap, if it is not already present.
+     * @param e
+     * @return true iff e was added
+     */
+    public boolean add(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        double priority = ThreadLocalRandom.current().nextDouble();
+        while (true) {
+            Node<E> r = root.get();
+            Node<E> updated = insert(r, e, priority);
+            if (updated == r) {
+                return false;
+            }
+            if (root.compareAndSet(r, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Remove e from the treap, if it is present.
+     * @param e
+     * @return true iff e was removed
+     */
+    public boolean remove(E e) {
+        while (true) {
+            Node<E> r = root.get();
+            Node<E> updated = delete(r, e);
+            if (updated == r) {
+                return false;
+            }
+            if (root.compareAndSet(r, updated)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return snapshot().iterator();
+    }
+
+    public Stream<E> stream() {
+        return snapshot().stream();
+    }
+
+    static <E extends Comparable<E>> boolean contains(Node<E> n, E e) {
+        while (n != null) {
+            int c = e.compareTo(n.data);
+            if (c == 0) {
+                return true;
+            }
+            n = c < 0 ? n.left : n.right;
+        }
+        return false;
+    }
+
+    static <E extends Comparable<E>> int rank(Node<E> n, E e) {
+        int r = 0;
+        while (n != null) {
+            int c = e.compareTo(n.data);
+            if (c <= 0) {
+                n = n.left;
+            } else {
+                r += Node.size(n.left) + 1;
+                n = n.right;
+            }
+        }
+        return r;
+    }
+
+    static <E> E select(Node<E> n, int k) {
+        if (k < 0 || k >= Node.size(n)) {
+            throw new IndexOutOfBoundsException("index " + k + " out of bounds for size " + Node.size(n));
+        }
+        while (true) {
+            int l = Node.size(n.left);
+            if (k < l) {
+                n = n.left;
+            } else if (k == l) {
+                return n.data;
+            } else {
+                k -= l + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    /**
+     * Return the root of a copy of n's subtree with e added, sharing every
+     * node off the search path; or n itself if e is already present.
+     */
+    static <E extends Comparable<E>> Node<E> insert(Node<E> n, E e, double priority) {
+        if (n == null) {
+            return new Node<>(e, priority, null, null);
+        }
+        int c = e.compareTo(n.data);
+        if (c == 0) {
+            return n;
+        }
+        if (c < 0) {
+            Node<E> l = insert(n.left, e, priority);
+            if (l == n.left) {
+                return n;
+            }
+            if (l.priority > n.priority) {
+                // rotate the new node up, as Treap.rotateLL would
+                return new Node<>(l.data, l.priority, l.left, new Node<>(n.data, n.priority, l.right, n.right));
+            }
+            return new Node<>(n.data, n.priority, l, n.right);
+        } else {
+            Node<E> r = insert(n.right, e, priority);
+            if (r == n.right) {
+                return n;
+            }
+            if (r.priority > n.priority) {
+                return new Node<>(r.data, r.priority, new Node<>(n.data, n.priority, n.left, r.left), r.right);
+            }
+            return new Node<>(n.data, n.priority, n.left, r);
+        }
+    }
+
+    /**
+     * Return the root of a copy of n's subtree without e, or n itself if e
+     * is not present.
+     */
+    static <E extends Comparable<E>> Node<E> delete(Node<E> n, E e) {
+        if (n == null) {
+            return null;
+        }
+        int c = e.compareTo(n.data);
+        if (c == 0) {
+            return join(n.left, n.right);
+        }
+        if (c < 0) {
+            Node<E> l = delete(n.left, e);
+            return l == n.left ? n : new Node<>(n.data, n.priority, l, n.right);
+        } else {
+            Node<E> r = delete(n.right, e);
+            return r == n.right ? n : new Node<>(n.data, n.priority, n.left, r);
+        }
+    }
+
+    /**
+     * Join two subtrees, every element of a less than every element of b,
+     * copying the nodes along the right spine of a and the left spine of b
+     * that the join passes through.
+     */
+    static <E> Node<E> join(Node<E> a, Node<E> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            return new Node<>(a.data, a.priority, a.left, join(a.right, b));
+        } else {
+            return new Node<>(b.data, b.priority, join(a, b.left), b.right);
+        }
+    }
+
+    static final class InOrder<E> implements Iterator<E> {
+        final ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+
+        InOrder(Node<E> root) {
+            pushLeftSpine(root);
+        }
+
+        private void pushLeftSpine(Node<E> n) {
+            for (; n != null; n = n.left) {
+                stack.push(n);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<E> n = stack.pop();
+            pushLeftSpine(n.right);
+            return n.data;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+
+public class PersistentTreapTest {
+
+   private static boolean isValid(PersistentTreap.Node<Integer> n, Integer lo, Integer hi) {
+      if (n == null) {
+         return true;
+      }
+      if ((lo != null && n.data <= lo) || (hi != null && n.data >= hi)) {
+         return false;
+      }
+      if ((n.left != null && n.left.priority > n.priority) || (n.right != null && n.right.priority > n.priority)) {
+         return false;
+      }
+      if (n.size != PersistentTreap.Node.size(n.left) + PersistentTreap.Node.size(n.right) + 1) {
+         return false;
+      }
+      return isValid(n.left, lo, n.data) && isValid(n.right, n.data, hi);
+   }
+
+   private static void assertValid(PersistentTreap.Snapshot<Integer> s, Collection<Integer> expected) {
+      assertTrue(isValid(s.root, null, null));
+      assertEquals(expected.size(), s.size());
+      assertEquals(new ArrayList<>(expected), s.stream().collect(Collectors.toList()));
+   }
+
+   @Test
+   public void testAddRemove100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         PersistentTreap<Integer> t = new PersistentTreap<>();
+         TreeSet<Integer> expected = new TreeSet<>();
+         for (int i = 0; i < 300; i++) {
+            int x = r.nextInt(200);
+            if (r.nextInt(3) == 0) {
+               assertEquals(expected.remove(x), t.remove(x));
+            } else {
+               assertEquals(expected.add(x), t.add(x));
+            }
+            assertEquals(expected.contains(x), t.contains(x));
+         }
+         assertValid(t.snapshot(), expected);
+         for (int k = 0; k < expected.size(); k++) {
+            int x = t.snapshot().select(k);
+            assertEquals(k, t.snapshot().rank(x));
+         }
+      }
+   }
+
+   @Test
+   public void testSnapshotsDoNotChange() throws Exception {
+      Random r = new Random(0);
+      PersistentTreap<Integer> t = new PersistentTreap<>();
+      TreeSet<Integer> expected = new TreeSet<>();
+      List<PersistentTreap.Snapshot<Integer>> snapshots = new ArrayList<>();
+      List<TreeSet<Integer>> contents = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+         int x = r.nextInt(500);
+         if (r.nextBoolean()) {
+            t.add(x);
+            expected.add(x);
+         } else {
+            t.remove(x);
+            expected.remove(x);
+         }
+         if (i % 50 == 0) {
+            snapshots.add(t.snapshot());
+            contents.add(new TreeSet<>(expected));
+         }
+      }
+      for (int i = 0; i < snapshots.size(); i++) {
+         assertValid(snapshots.get(i), contents.get(i));
+      }
+   }
+
+   @Test
+   public void testUnchangedVersionIsShared() throws Exception {
+      PersistentTreap<Integer> t = new PersistentTreap<>();
+      t.add(1);
+      t.add(2);
+      PersistentTreap.Snapshot<Integer> before = t.snapshot();
+      assertFalse(t.add(2));
+      assertFalse(t.remove(3));
+      assertSame(before.root, t.snapshot().root);
+   }
+
+   @Test
+   public void testConcurrentWriters() throws Exception {
+      final int threads = 4;
+      final int perThread = 5_000;
+      PersistentTreap<Integer> t = new PersistentTreap<>();
+      AtomicBoolean consistent = new AtomicBoolean(true);
+      Thread[] workers = new Thread[threads];
+      for (int i = 0; i < threads; i++) {
+         final int id = i;
+         workers[i] = new Thread(() -> {
+            for (int j = 0; j < perThread; j++) {
+               t.add(j * threads + id);
+               // readers see a consistent version at every point
+               if (!isValid(t.snapshot().root, null, null)) {
+                  consistent.set(false);
+               }
+            }
+            for (int j = 0; j < perThread; j += 2) {
+               t.remove(j * threads + id);
+            }
+         });
+         workers[i].start();
+      }
+      for (Thread w : workers) {
+         w.join();
+      }
+      assertTrue(consistent.get());
+      TreeSet<Integer> expected = new TreeSet<>();
+      for (int i = 0; i < threads * perThread; i++) {
+         if ((i / threads) % 2 == 1) {
+            expected.add(i);
+         }
+      }
+      assertValid(t.snapshot(), expected);
+   }
+}
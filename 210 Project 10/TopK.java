@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.stream.DoubleStream;
+
+/**
+ * Keeps the k largest of a stream of doubles, in O(k) space and O(log k)
+ * time per value, instead of sorting the whole input.
+ *
+ * The kept values are held in a min-heap, so the smallest of them (the
+ * one a new value must beat to get in) is always at the root. The
+ * min-heap is stored negated in a max-heap, so it can use the sift
+ * operations in HeapUtilities directly.
+ *
+ * Two TopKs can be merged, so per-thread selections can be combined; the
+ * of method uses this to select from a (possibly parallel) DoubleStream.
+ */
+public class TopK {
+    final int k;
+    // the kept values, negated and in max-heap order
+    final double[] heap;
+    int size;
+
+    /**
+     * @param k the number of values to keep
+     */
+    public TopK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("negative k: " + k);
+        }
+        this.k = k;
+        heap = new double[k];
+    }
+
+    /**
+     * Return the k largest values of the stream, largest first.
+     * @param s the values to select from
+     * @param k the number of values to keep
+     * @return the k largest values of s (or all of them, if there are
+     * fewer than k), largest first
+     */
+    public static double[] of(DoubleStream s, int k) {
+        return s.collect(() -> new TopK(k), TopK::add, TopK::merge).toSortedArray();
+    }
+
+    public int k() {
+        return k;
+    }
+
+    /**
+     * @return the number of values currently kept, at most k
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the smallest value kept, that is, the value a new value must
+     * exceed to be kept once k values have been seen.
+     * @return the smallest value kept
+     * @throws NoSuchElementException if nothing is kept
+     */
+    public double min() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return -heap[0];
+    }
+
+    /**
+     * Offer a single value.
+     * @param x
+     */
+    public void add(double x) {
+        if (size < k) {
+            heap[size] = -x;
+            HeapUtilities.siftUp(heap, size);
+            size++;
+        } else if (k > 0 && -x < heap[0]) {
+            heap[0] = -x;
+            HeapUtilities.siftDown(heap, 0, size);
+        }
+    }
+
+    /**
+     * Offer every value in a.
+     * @param a
+     */
+    public void addAll(double[] a) {
+        addAll(a, 0, a.length);
+    }
+
+    /**
+     * Offer the values a[from..to-1].
+     * @param a
+     * @param from the first index of the range (inclusive)
+     * @param to the last index of the range (exclusive)
+     */
+    public void addAll(double[] a, int from, int to) {
+        int i = from;
+        if (size < k) {
+            // fill up without sifting, then heapify once
+            while (size < k && i < to) {
+                heap[size++] = -a[i++];
+            }
+            HeapUtilities.heapify(heap, size);
+        }
+        for (; i < to; i++) {
+            add(a[i]);
+        }
+    }
+
+    /**
+     * Offer every value kept by other, so that this keeps the k largest of
+     * everything offered to either. other is unchanged.
+     * @param other
+     */
+    public void merge(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            add(-other.heap[i]);
+        }
+    }
+
+    /**
+     * Return the values kept, largest first. This does not change what is kept.
+     * @return the values kept, largest first
+     */
+    public double[] toSortedArray() {
+        double[] a = Arrays.copyOf(heap, size);
+        // ascending order of the negated values is descending order of the values
+        HeapUtilities.heapSort(a);
+        for (int i = 0; i < a.length; i++) {
+            a[i] = -a[i];
+        }
+        return a;
+    }
+}
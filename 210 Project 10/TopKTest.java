@@ -0,0 +1,92 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package heaps;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.DoubleStream;
+
+import org.junit.Test;
+
+
+public class TopKTest {
+
+    private static double[] largestFirst(double[] a, int k) {
+        double[] t = a.clone();
+        Arrays.sort(t);
+        double[] r = new double[Math.min(k, t.length)];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = t[t.length - 1 - i];
+        }
+        return r;
+    }
+
+    @Test
+    public void testFewerThanK() throws Exception {
+        TopK t = new TopK(5);
+        t.add(1.0);
+        t.add(3.0);
+        t.add(2.0);
+        assertArrayEquals(new double[] { 3.0, 2.0, 1.0 }, t.toSortedArray(), 0);
+        assertEquals(1.0, t.min(), 0);
+    }
+
+    @Test
+    public void testZero() throws Exception {
+        TopK t = new TopK(0);
+        t.addAll(new double[] { 1.0, 2.0 });
+        assertEquals(0, t.size());
+        assertEquals(0, t.toSortedArray().length);
+    }
+
+    @Test
+    public void testAdd100Randomized() throws Exception {
+        for (int seed = 0; seed < 100; seed++) {
+            Random r = new Random(seed);
+            int k = r.nextInt(20);
+            double[] a = new double[200];
+            TopK t = new TopK(k);
+            for (int i = 0; i < a.length; i++) {
+                a[i] = r.nextInt(100);
+                t.add(a[i]);
+            }
+            assertArrayEquals(largestFirst(a, k), t.toSortedArray(), 0);
+        }
+    }
+
+    @Test
+    public void testAddAllChunks() throws Exception {
+        Random r = new Random(0);
+        double[] a = new double[1000];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = r.nextDouble();
+        }
+        TopK t = new TopK(50);
+        for (int from = 0; from < a.length; from += 30) {
+            t.addAll(a, from, Math.min(from + 30, a.length));
+        }
+        assertArrayEquals(largestFirst(a, 50), t.toSortedArray(), 0);
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        TopK t = new TopK(3);
+        t.addAll(new double[] { 5.0, 1.0, 4.0 });
+        TopK u = new TopK(3);
+        u.addAll(new double[] { 2.0, 6.0, 3.0 });
+        t.merge(u);
+        assertArrayEquals(new double[] { 6.0, 5.0, 4.0 }, t.toSortedArray(), 0);
+        assertEquals(3, u.size());
+    }
+
+    @Test
+    public void testParallelStream() throws Exception {
+        Random r = new Random(0);
+        double[] a = r.doubles(100_000).toArray();
+        assertArrayEquals(largestFirst(a, 100), TopK.of(DoubleStream.of(a).parallel(), 100), 0);
+    }
+}
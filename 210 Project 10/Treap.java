@@ -4,10 +4,21 @@
 
 package treaps;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class Treap<E extends Comparable<E>> {
+public class Treap<E extends Comparable<E>> implements Iterable<E> {
     Node<E> root;
     int size;
 
@@ -15,6 +26,84 @@ public class Treap<E extends Comparable<E>> {
         return size;
     }
 
+    /**
+     * Return the number of elements in the treap less than e. Expected O(log n).
+     * @param e
+     * @return the number of elements less than e
+     */
+    public int rank(E e) {
+        int rank = 0;
+        Node<E> n = root;
+        while (n != null) {
+            int c = e.compareTo(n.data);
+            if (c <= 0) {
+                n = n.left;
+            } else {
+                rank += Node.size(n.left) + 1;
+                n = n.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Return the element of rank k, that is, the k-th smallest element
+     * counting from 0. Expected O(log n).
+     * @param k
+     * @return the element of rank k
+     * @throws IndexOutOfBoundsException if k is not in [0, size)
+     */
+    public E select(int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("rank " + k + " out of bounds for size " + size);
+        }
+        Node<E> n = root;
+        while (true) {
+            int leftSize = Node.size(n.left);
+            if (k < leftSize) {
+                n = n.left;
+            } else if (k == leftSize) {
+                return n.data;
+            } else {
+                k -= leftSize + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    /**
+     * Return the number of elements e with lo <= e < hi. Expected O(log n).
+     * @param lo the lower bound (inclusive)
+     * @param hi the upper bound (exclusive)
+     * @return the number of elements in [lo, hi)
+     */
+    public int countRange(E lo, E hi) {
+        if (lo.compareTo(hi) >= 0) {
+            return 0;
+        }
+        return rank(hi) - rank(lo);
+    }
+
+    /**
+     * Return the p-th percentile element by the nearest-rank method: the
+     * smallest element that is greater than or equal to a fraction p of
+     * all the elements. Expected O(log n).
+     * @param p a fraction in [0, 1]; for example 0.99 for the 99th percentile
+     * @return the p-th percentile element
+     * @throws IllegalArgumentException if p is not in [0, 1]
+     * @throws NoSuchElementException if the treap is empty
+     */
+    public E percentile(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("percentile must be in [0, 1]: " + p);
+        }
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int k = (int) Math.ceil(p * size) - 1;
+        return select(Math.max(k, 0));
+    }
+
     /**
      * Return true iff the tree contains the value e.
      * @param e
@@ -48,14 +137,158 @@ public class Treap<E extends Comparable<E>> {
      * @return a list of elements from the tree from an in-order traversal starting at node
      */
     static <E> List<E> inOrder(Node<E> node) {
-        List<E> list = new ArrayList<E>();
-        if (node != null) {
-            list.addAll(inOrder(node.left));
-            list.add(node.data);
-            list.addAll(inOrder(node.right));
-        }
+        List<E> list = new ArrayList<E>(Node.size(node));
+        new InOrder<>(node).forEachRemaining((E e) -> list.add(e));
         return list;
     }
+
+    /**
+     * A lazy in-order traversal of a subtree, usable as either an Iterator
+     * or a Spliterator.
+     * 
+     * Rather than recursing, it keeps an explicit stack of pending nodes:
+     * each one is still to be visited, followed by its right subtree. The
+     * stack holds one node per level, so it is never deeper than the tree.
+     * 
+     * trySplit hands off a prefix of the remaining traversal, cut at subtree
+     * boundaries: everything but the bottom pending node (the one highest in
+     * the tree) and its right subtree. Since subtree sizes are known, the
+     * sizes of both halves are exact.
+     */
+    static final class InOrder<E> implements Iterator<E>, Spliterator<E> {
+        // a node to visit before the stack, without its right subtree
+        Node<E> first;
+        final ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+        int remaining;
+
+        InOrder(Node<E> root) {
+            pushLeftSpine(root);
+            remaining = Node.size(root);
+        }
+
+        private InOrder() {
+        }
+
+        private void pushLeftSpine(Node<E> n) {
+            for (; n != null; n = n.left) {
+                stack.push(n);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public E next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            if (first != null) {
+                Node<E> n = first;
+                first = null;
+                return n.data;
+            }
+            Node<E> n = stack.pop();
+            pushLeftSpine(n.right);
+            return n.data;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (remaining == 0) {
+                return false;
+            }
+            action.accept(next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            while (remaining > 0) {
+                action.accept(next());
+            }
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            if (first == null && stack.size() == 1) {
+                // only one node and its right subtree are left; visit the
+                // node on its own, so the right subtree's spine can be split
+                Node<E> n = stack.pop();
+                first = n;
+                pushLeftSpine(n.right);
+            }
+            if (stack.isEmpty() || (first == null && stack.size() == 1)) {
+                return null;
+            }
+            Node<E> bottom = stack.removeLast();
+            InOrder<E> prefix = new InOrder<>();
+            prefix.first = first;
+            // move the rest of the stack over, keeping its order
+            while (!stack.isEmpty()) {
+                prefix.stack.addLast(stack.removeFirst());
+            }
+            prefix.remaining = remaining - 1 - Node.size(bottom.right);
+            first = null;
+            stack.push(bottom);
+            remaining -= prefix.remaining;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SORTED | SIZED | SUBSIZED | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            // null means the elements' natural order
+            return null;
+        }
+    }
+
+    /**
+     * Return a lazy in-order iterator over the treap. It holds O(log n)
+     * nodes at a time, and can be abandoned part way through at no cost.
+     * The treap must not be modified while the iterator is in use.
+     * @return an iterator over the elements in ascending order
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new InOrder<>(root);
+    }
+
+    /**
+     * Return a spliterator over the treap in ascending order, which splits
+     * at subtree boundaries, so that parallel streams divide the work.
+     * @return a spliterator over the elements in ascending order
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new InOrder<>(root);
+    }
+
+    /**
+     * @return a sequential stream of the elements in ascending order
+     */
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return a parallel stream of the elements in ascending order
+     */
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
     
     /**
      * Returns true iff the tree rooted at n is a Binary Search Tree (based on its data values).
@@ -177,10 +410,12 @@ public class Treap<E extends Comparable<E>> {
 
         if (e.equals(node.data)) {
             node.data = e;
+            return;
         }
         if (e.compareTo(node.data) < 0) {
             if (node.left == null) {
                 node.left = new Node<>(e, node);
+                growPath(node.left);
                 doThing(node.left);
                 size++;
                 return;
@@ -190,6 +425,7 @@ public class Treap<E extends Comparable<E>> {
         } else {
             if (node.right == null) {
                 node.right = new Node<>(e, node);
+                growPath(node.right);
                 doThing(node.right);
                 size++;
                 return;
@@ -199,6 +435,118 @@ public class Treap<E extends Comparable<E>> {
         }
     }
 
+    /**
+     * Count a newly added leaf n in the subtree size of each of its ancestors.
+     * @param n
+     */
+    private void growPath(Node<E> n) {
+        for (Node<E> p = n.parent; p != null; p = p.parent) {
+            p.size++;
+        }
+    }
+
+    /**
+     * Remove the value e from the treap, if it is present. The node is
+     * rotated down, always below whichever child has the higher priority,
+     * until it has at most one child, and then unlinked. Expected O(log n).
+     * @param e
+     * @return true iff e was removed
+     */
+    public boolean remove(E e) {
+        Node<E> n = find(e);
+        if (n == null) {
+            return false;
+        }
+        while (n.left != null && n.right != null) {
+            if (n.left.priority > n.right.priority) {
+                rotateLL(n);
+            } else {
+                rotateRR(n);
+            }
+        }
+        unlink(n);
+        return true;
+    }
+
+    /**
+     * Remove and return the smallest element in the treap.
+     * @return the smallest element, or null if the treap is empty
+     */
+    public E pollFirst() {
+        if (root == null) {
+            return null;
+        }
+        Node<E> n = root;
+        while (n.left != null) {
+            n = n.left;
+        }
+        unlink(n);
+        return n.data;
+    }
+
+    /**
+     * Remove and return the largest element in the treap.
+     * @return the largest element, or null if the treap is empty
+     */
+    public E pollLast() {
+        if (root == null) {
+            return null;
+        }
+        Node<E> n = root;
+        while (n.right != null) {
+            n = n.right;
+        }
+        unlink(n);
+        return n.data;
+    }
+
+    /**
+     * Remove every element e with lo <= e < hi, by splitting the interval
+     * out of the treap and joining what is left. The removed nodes are
+     * dropped as a whole subtree rather than visited, so this is expected
+     * O(log n) however many elements are removed.
+     * @param lo the lower bound (inclusive)
+     * @param hi the upper bound (exclusive)
+     * @return the number of elements removed
+     */
+    public int removeRange(E lo, E hi) {
+        if (lo.compareTo(hi) >= 0) {
+            return 0;
+        }
+        Split<E> parts = new Split<>();
+        split(root, lo, parts);
+        Node<E> less = parts.less;
+        split(join(parts.equal, parts.greater), hi, parts);
+        root = join(less, join(parts.equal, parts.greater));
+        int removed = size - Node.size(root);
+        size -= removed;
+        return removed;
+    }
+
+    /**
+     * Unlink n, which has at most one child, from the treap.
+     * @param n
+     */
+    private void unlink(Node<E> n) {
+        Node<E> child = n.left != null ? n.left : n.right;
+        Node<E> p = n.parent;
+        if (child != null) {
+            child.parent = p;
+        }
+        if (p == null) {
+            root = child;
+        } else if (p.left == n) {
+            p.left = child;
+        } else {
+            p.right = child;
+        }
+        for (; p != null; p = p.parent) {
+            p.size--;
+        }
+        n.left = n.right = n.parent = null;
+        size--;
+    }
+
     /**
      * Perform an LL rotation around n.
      * @param n
@@ -235,6 +583,10 @@ public class Treap<E extends Comparable<E>> {
         if (T2 != null) {
             T2.parent = B;
         }
+
+        // B is now below A, so its size must be fixed first
+        B.updateSize();
+        A.updateSize();
     }
 
     /**
@@ -268,6 +620,397 @@ public class Treap<E extends Comparable<E>> {
         if (T2 != null) {
             T2.parent = B;
         }
+        B.updateSize();
+        A.updateSize();
+    }
+
+    /**
+     * The result of splitting a subtree around a key: the roots of the
+     * parts less than and greater than the key, and the node equal to it
+     * (detached from both), if there was one.
+     */
+    static final class Split<E> {
+        Node<E> less;
+        Node<E> equal;
+        Node<E> greater;
+    }
+
+    /**
+     * Split the subtree rooted at n around key, reusing its nodes. The roots
+     * of the parts have null parents.
+     * @param n
+     * @param key
+     * @param out where to store the parts
+     */
+    static <E extends Comparable<E>> void split(Node<E> n, E key, Split<E> out) {
+        if (n == null) {
+            out.less = null;
+            out.equal = null;
+            out.greater = null;
+            return;
+        }
+        int c = n.data.compareTo(key);
+        if (c < 0) {
+            split(n.right, key, out);
+            n.right = out.less;
+            if (n.right != null) {
+                n.right.parent = n;
+            }
+            out.less = n;
+        } else if (c > 0) {
+            split(n.left, key, out);
+            n.left = out.greater;
+            if (n.left != null) {
+                n.left.parent = n;
+            }
+            out.greater = n;
+        } else {
+            out.less = n.left;
+            out.greater = n.right;
+            out.equal = n;
+            if (n.left != null) {
+                n.left.parent = null;
+            }
+            if (n.right != null) {
+                n.right.parent = null;
+            }
+            n.left = null;
+            n.right = null;
+        }
+        n.updateSize();
+        n.parent = null;
+    }
+
+    /**
+     * Join two subtrees into one, reusing their nodes. Every value in a must
+     * be less than every value in b. The root of the result has a null parent.
+     * @param a
+     * @param b
+     * @return the root of the joined subtree
+     */
+    static <E> Node<E> join(Node<E> a, Node<E> b) {
+        Node<E> r = joinRec(a, b);
+        if (r != null) {
+            r.parent = null;
+        }
+        return r;
+    }
+
+    private static <E> Node<E> joinRec(Node<E> a, Node<E> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = joinRec(a.right, b);
+            a.right.parent = a;
+            a.updateSize();
+            return a;
+        } else {
+            b.left = joinRec(a, b.left);
+            b.left.parent = b;
+            b.updateSize();
+            return b;
+        }
+    }
+
+    /**
+     * Remove every element greater than or equal to key from this treap,
+     * and return them as a new treap. Expected O(log n).
+     * @param key
+     * @return a treap of the elements that were greater than or equal to key
+     */
+    public Treap<E> split(E key) {
+        Split<E> parts = new Split<>();
+        split(root, key, parts);
+        Treap<E> greater = new Treap<>();
+        greater.root = join(parts.equal, parts.greater);
+        greater.size = Node.size(greater.root);
+        root = parts.less;
+        size -= greater.size;
+        return greater;
+    }
+
+    /**
+     * Move every element of other to the end of this treap, leaving other
+     * empty. Expected O(log n).
+     * @param other a treap whose elements are all greater than this treap's
+     * @throws IllegalArgumentException if some element of other is not
+     * greater than every element of this treap
+     */
+    public void join(Treap<E> other) {
+        if (root != null && other.root != null) {
+            Node<E> max = root;
+            while (max.right != null) {
+                max = max.right;
+            }
+            Node<E> min = other.root;
+            while (min.left != null) {
+                min = min.left;
+            }
+            if (max.data.compareTo(min.data) >= 0) {
+                throw new IllegalArgumentException("cannot join: " + max.data + " is not less than " + min.data);
+            }
+        }
+        root = join(root, other.root);
+        size += other.size;
+        other.root = null;
+        other.size = 0;
+    }
+
+    /**
+     * Builds a treap from nodes given in ascending order, with whatever
+     * priorities they already have, in O(n), as a Cartesian tree: the
+     * rightmost path of the tree built so far is kept on a stack, and each
+     * new node pops the nodes of lower priority off it, adopts the last one
+     * popped as its left child, and becomes the right child of the new top.
+     * A node's subtree is final once it is popped, so its size is computed
+     * then.
+     */
+    static final class Builder<E> {
+        private final ArrayDeque<Node<E>> spine = new ArrayDeque<>();
+
+        void append(Node<E> n) {
+            Node<E> last = null;
+            while (!spine.isEmpty() && spine.peek().priority < n.priority) {
+                last = spine.pop();
+                last.updateSize();
+            }
+            n.left = last;
+            if (last != null) {
+                last.parent = n;
+            }
+            if (!spine.isEmpty()) {
+                spine.peek().right = n;
+                n.parent = spine.peek();
+            }
+            spine.push(n);
+        }
+
+        /**
+         * @return the root of the tree of every node appended
+         */
+        Node<E> finish() {
+            Node<E> top = null;
+            while (!spine.isEmpty()) {
+                top = spine.pop();
+                top.updateSize();
+            }
+            return top;
+        }
+    }
+
+    /**
+     * Wrap a root built elsewhere, such as by a Builder, as a treap.
+     */
+    static <E extends Comparable<E>> Treap<E> of(Node<E> root) {
+        Treap<E> t = new Treap<>();
+        t.root = root;
+        t.size = Node.size(root);
+        return t;
+    }
+
+    /**
+     * Build a treap from elements in ascending order in O(n), without any
+     * rotations (see Builder). Repeated elements are added once.
+     * @param sorted elements in ascending order
+     * @return a treap of the elements
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public static <E extends Comparable<E>> Treap<E> fromSorted(Iterable<? extends E> sorted) {
+        Builder<E> builder = new Builder<>();
+        E previous = null;
+        for (E e : sorted) {
+            if (previous != null) {
+                int c = previous.compareTo(e);
+                if (c == 0) {
+                    continue;
+                }
+                if (c > 0) {
+                    throw new IllegalArgumentException("not sorted: " + previous + " before " + e);
+                }
+            }
+            previous = e;
+            builder.append(new Node<>(e));
+        }
+        return of(builder.finish());
+    }
+
+    /**
+     * Build a treap from elements in any order: sort a copy of them with
+     * Arrays.parallelSort, then build from that in O(n).
+     * @param values
+     * @return a treap of the values
+     */
+    public static <E extends Comparable<E>> Treap<E> fromUnsorted(E[] values) {
+        E[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.parallelSort(sorted);
+        return fromSorted(Arrays.asList(sorted));
+    }
+
+    /**
+     * Add elements in ascending order. If they all come after this treap's
+     * elements, as when appending to a log, this takes O(n + log size());
+     * otherwise they are built into a treap of their own in O(n) and merged
+     * in with union.
+     * @param sorted elements in ascending order
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public void addAllSorted(Iterable<? extends E> sorted) {
+        Treap<E> other = fromSorted(sorted);
+        if (root == null || other.root == null) {
+            if (root == null) {
+                root = other.root;
+                size = other.size;
+            }
+            return;
+        }
+        Node<E> max = root;
+        while (max.right != null) {
+            max = max.right;
+        }
+        Node<E> min = other.root;
+        while (min.left != null) {
+            min = min.left;
+        }
+        if (max.data.compareTo(min.data) < 0) {
+            join(other);
+        } else {
+            Treap<E> u = union(this, other);
+            root = u.root;
+            size = u.size;
+        }
+    }
+
+    /**
+     * The set operations on two subtrees, by divide and conquer: the root
+     * with the higher priority splits the other subtree around its value,
+     * and the two sides are combined independently, in parallel near the
+     * top of the tree and sequentially below FORK_DEPTH.
+     */
+    static final class SetOperation<E extends Comparable<E>> extends RecursiveTask<Node<E>> {
+        private static final long serialVersionUID = 1L;
+        // 2^FORK_DEPTH tasks is plenty to keep any number of cores busy
+        static final int FORK_DEPTH = 10;
+
+        static final int UNION = 0;
+        static final int INTERSECTION = 1;
+        static final int DIFFERENCE = 2;
+
+        final int op;
+        final Node<E> a;
+        final Node<E> b;
+        final int depth;
+
+        SetOperation(int op, Node<E> a, Node<E> b, int depth) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Node<E> compute() {
+            if (a == null) {
+                return op == UNION ? b : null;
+            }
+            if (b == null) {
+                return op == INTERSECTION ? null : a;
+            }
+            Node<E> t = a;
+            Node<E> u = b;
+            // union and intersection are symmetric, so let the root with the
+            // higher priority stay the root; difference must keep a's nodes
+            if (op != DIFFERENCE && u.priority > t.priority) {
+                t = b;
+                u = a;
+            }
+            Split<E> parts = new Split<>();
+            split(u, t.data, parts);
+            Node<E> left;
+            Node<E> right;
+            if (depth < FORK_DEPTH) {
+                SetOperation<E> leftTask = new SetOperation<>(op, t.left, parts.less, depth + 1);
+                leftTask.fork();
+                right = new SetOperation<>(op, t.right, parts.greater, depth + 1).compute();
+                left = leftTask.join();
+            } else {
+                left = new SetOperation<>(op, t.left, parts.less, depth + 1).compute();
+                right = new SetOperation<>(op, t.right, parts.greater, depth + 1).compute();
+            }
+            boolean keep = op == UNION || (op == INTERSECTION) == (parts.equal != null);
+            if (!keep) {
+                return Treap.join(left, right);
+            }
+            t.left = left;
+            t.right = right;
+            if (left != null) {
+                left.parent = t;
+            }
+            if (right != null) {
+                right.parent = t;
+            }
+            t.updateSize();
+            t.parent = null;
+            return t;
+        }
+    }
+
+    private static <E extends Comparable<E>> Treap<E> setOperation(int op, Treap<E> a, Treap<E> b) {
+        if (a == b) {
+            // splitting one side would tear apart the other as well
+            throw new IllegalArgumentException("cannot combine a treap with itself");
+        }
+        Node<E> r = ForkJoinPool.commonPool().invoke(new SetOperation<>(op, a.root, b.root, 0));
+        if (r != null) {
+            r.parent = null;
+        }
+        Treap<E> result = new Treap<>();
+        result.root = r;
+        result.size = Node.size(r);
+        a.root = null;
+        a.size = 0;
+        b.root = null;
+        b.size = 0;
+        return result;
+    }
+
+    /**
+     * Return a treap of the elements in either a or b. The nodes of a and b
+     * are reused, so both are left empty.
+     * @param a
+     * @param b
+     * @return the union of a and b
+     * @throws IllegalArgumentException if a and b are the same treap
+     */
+    public static <E extends Comparable<E>> Treap<E> union(Treap<E> a, Treap<E> b) {
+        return setOperation(SetOperation.UNION, a, b);
+    }
+
+    /**
+     * Return a treap of the elements in both a and b. The nodes of a and b
+     * are reused, so both are left empty.
+     * @param a
+     * @param b
+     * @return the intersection of a and b
+     * @throws IllegalArgumentException if a and b are the same treap
+     */
+    public static <E extends Comparable<E>> Treap<E> intersection(Treap<E> a, Treap<E> b) {
+        return setOperation(SetOperation.INTERSECTION, a, b);
+    }
+
+    /**
+     * Return a treap of the elements in a but not in b. The nodes of a and b
+     * are reused, so both are left empty.
+     * @param a
+     * @param b
+     * @return the difference of a and b
+     * @throws IllegalArgumentException if a and b are the same treap
+     */
+    public static <E extends Comparable<E>> Treap<E> difference(Treap<E> a, Treap<E> b) {
+        return setOperation(SetOperation.DIFFERENCE, a, b);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * A throughput benchmark for Treap and TreapMap, with TreeMap and
+ * ConcurrentSkipListMap alongside as baselines.
+ *
+ * Every operation runs on every structure, at sizes from 1K up to a maximum
+ * (10M by default, 50M given the memory), and on four kinds of distinct
+ * int keys: random, and three orders that are adversarial for an
+ * unbalanced search tree (sorted, reverse-sorted, and zigzag, alternating
+ * between the smallest and largest keys left). The operations are:
+ *
+ * - add: build the structure from empty, one key at a time;
+ * - contains: look up every key and as many absent keys;
+ * - iterate: walk the whole structure in order;
+ * - mixed: from half full, a random mix of 50% contains, 25% add and 25%
+ *   remove.
+ *
+ * Each (structure, operation, input, size) is warmed up, then timed over
+ * several iterations on a fresh structure. It reports the best time per
+ * operation, the bytes allocated per operation and garbage collections per
+ * iteration, and for the treaps, the average and maximum node depth when
+ * the run ends, which is what the expected O(log n) bounds are about.
+ * Keys are boxed before timing starts, so the allocation counts are the
+ * structures' own.
+ *
+ * This is a plain main rather than a JMH suite so that it runs with no
+ * build tooling; run it on an otherwise idle machine with a fixed heap size,
+ * for example java -Xms16g -Xmx16g treaps.TreapBenchmark 50000000.
+ *
+ * Usage: TreapBenchmark [maxSize] [iterations]
+ */
+public class TreapBenchmark {
+    // keeps results live, so the JIT cannot discard the work that made them
+    static volatile long sink;
+
+    enum Input {
+        RANDOM, SORTED, REVERSED, ZIGZAG;
+
+        /**
+         * @return n distinct non-negative keys in this order, boxed
+         */
+        Integer[] make(int n, Random r) {
+            Integer[] a = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                switch (this) {
+                case RANDOM:
+                case SORTED:
+                    a[i] = i;
+                    break;
+                case REVERSED:
+                    a[i] = n - 1 - i;
+                    break;
+                case ZIGZAG:
+                    a[i] = i % 2 == 0 ? i / 2 : n - 1 - i / 2;
+                    break;
+                }
+            }
+            if (this == RANDOM) {
+                for (int i = n - 1; i > 0; i--) {
+                    int j = r.nextInt(i + 1);
+                    Integer t = a[i];
+                    a[i] = a[j];
+                    a[j] = t;
+                }
+            }
+            return a;
+        }
+    }
+
+    /**
+     * The operations the benchmark performs, so the same loops can drive
+     * each structure.
+     */
+    abstract static class Structure {
+        abstract void add(Integer k);
+
+        abstract boolean contains(Integer k);
+
+        abstract void remove(Integer k);
+
+        /**
+         * @return the sum of the keys, visited in order
+         */
+        abstract long iterate();
+
+        /**
+         * @return the average and maximum depth of the nodes, or null if the
+         * structure does not expose its nodes
+         */
+        double[] depth() {
+            return null;
+        }
+    }
+
+    enum Kind {
+        TREAP, TREAP_MAP, TREE_MAP, SKIP_LIST;
+
+        Structure create() {
+            switch (this) {
+            case TREAP:
+                return new Structure() {
+                    final Treap<Integer> t = new Treap<>();
+
+                    void add(Integer k) {
+                        t.add(k);
+                    }
+
+                    boolean contains(Integer k) {
+                        return t.contains(k);
+                    }
+
+                    void remove(Integer k) {
+                        t.remove(k);
+                    }
+
+                    long iterate() {
+                        long s = 0;
+                        for (int k : t) {
+                            s += k;
+                        }
+                        return s;
+                    }
+
+                    double[] depth() {
+                        return TreapBenchmark.depth(t.root, n -> n.left, n -> n.right);
+                    }
+                };
+            case TREAP_MAP:
+                return new MapStructure(new TreapMap<>()) {
+                    double[] depth() {
+                        TreapMap<Integer, Boolean> t = (TreapMap<Integer, Boolean>) m;
+                        return TreapBenchmark.depth(t.root, n -> n.left, n -> n.right);
+                    }
+                };
+            case TREE_MAP:
+                return new MapStructure(new TreeMap<>());
+            default:
+                return new MapStructure(new ConcurrentSkipListMap<>());
+            }
+        }
+    }
+
+    static class MapStructure extends Structure {
+        final Map<Integer, Boolean> m;
+
+        MapStructure(Map<Integer, Boolean> m) {
+            this.m = m;
+        }
+
+        void add(Integer k) {
+            m.put(k, Boolean.TRUE);
+        }
+
+        boolean contains(Integer k) {
+            return m.containsKey(k);
+        }
+
+        void remove(Integer k) {
+            m.remove(k);
+        }
+
+        long iterate() {
+            long s = 0;
+            for (int k : m.keySet()) {
+                s += k;
+            }
+            return s;
+        }
+    }
+
+    /**
+     * One benchmarked operation. setUp prepares a structure from the keys
+     * (untimed), then run does the timed work and returns how many
+     * operations it performed.
+     */
+    abstract static class Operation {
+        final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        Structure setUp(Kind kind, Integer[] keys) {
+            Structure s = kind.create();
+            for (Integer k : keys) {
+                s.add(k);
+            }
+            return s;
+        }
+
+        abstract long run(Structure s, Integer[] keys, Integer[] probes, byte[] mix);
+    }
+
+    static Operation[] operations() {
+        return new Operation[] {
+            new Operation("add") {
+                Structure setUp(Kind kind, Integer[] keys) {
+                    return kind.create();
+                }
+
+                long run(Structure s, Integer[] keys, Integer[] probes, byte[] mix) {
+                    for (Integer k : keys) {
+                        s.add(k);
+                    }
+                    return keys.length;
+                }
+            },
+            new Operation("contains") {
+                long run(Structure s, Integer[] keys, Integer[] probes, byte[] mix) {
+                    long found = 0;
+                    for (Integer k : probes) {
+                        if (s.contains(k)) {
+                            found++;
+                        }
+                    }
+                    sink = found;
+                    return probes.length;
+                }
+            },
+            new Operation("iterate") {
+                long run(Structure s, Integer[] keys, Integer[] probes, byte[] mix) {
+                    sink = s.iterate();
+                    return keys.length;
+                }
+            },
+            new Operation("mixed") {
+                Structure setUp(Kind kind, Integer[] keys) {
+                    Structure s = kind.create();
+                    for (int i = 0; i < keys.length; i += 2) {
+                        s.add(keys[i]);
+                    }
+                    return s;
+                }
+
+                long run(Structure s, Integer[] keys, Integer[] probes, byte[] mix) {
+                    long found = 0;
+                    for (int i = 0; i < keys.length; i++) {
+                        Integer k = keys[(i * 7) % keys.length];
+                        switch (mix[i]) {
+                        case 0:
+                        case 1:
+                            if (s.contains(k)) {
+                                found++;
+                            }
+                            break;
+                        case 2:
+                            s.add(k);
+                            break;
+                        default:
+                            s.remove(k);
+                        }
+                    }
+                    sink = found;
+                    return keys.length;
+                }
+            },
+        };
+    }
+
+    /**
+     * Walk the tree below root without recursion, so a degenerate tree
+     * cannot overflow the stack.
+     * @return the average and maximum depth of its nodes
+     */
+    static <N> double[] depth(N root, UnaryOperator<N> left, UnaryOperator<N> right) {
+        ArrayDeque<N> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> depths = new ArrayDeque<>();
+        long count = 0;
+        long total = 0;
+        int max = 0;
+        if (root != null) {
+            nodes.push(root);
+            depths.push(0);
+        }
+        while (!nodes.isEmpty()) {
+            N n = nodes.pop();
+            int d = depths.pop();
+            count++;
+            total += d;
+            max = Math.max(max, d);
+            for (N child : Arrays.asList(left.apply(n), right.apply(n))) {
+                if (child != null) {
+                    nodes.push(child);
+                    depths.push(d + 1);
+                }
+            }
+        }
+        return new double[] { count == 0 ? 0 : (double) total / count, max };
+    }
+
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    public static void main(String[] args) {
+        int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int warmups = 3;
+
+        // reading the allocation counter itself allocates a little; measure
+        // that once and subtract it from every reading
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long before = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - before);
+        }
+
+        System.out.println(String.format("%-10s %-9s %-9s %10s %10s %10s %8s %9s %9s",
+                "structure", "operation", "input", "size", "ns/op", "bytes/op", "gcs/iter", "avg depth",
+                "max depth"));
+        for (int n = Math.min(1000, maxSize); ; n = (int) Math.min(10L * n, maxSize)) {
+            Random r = new Random(n);
+            byte[] mix = new byte[n];
+            for (int i = 0; i < n; i++) {
+                mix[i] = (byte) r.nextInt(4);
+            }
+            for (Input input : Input.values()) {
+                Integer[] keys = input.make(n, r);
+                // every key, each followed by one that is never present
+                Integer[] probes = new Integer[2 * n];
+                for (int i = 0; i < n; i++) {
+                    probes[2 * i] = keys[i];
+                    probes[2 * i + 1] = -1 - keys[i];
+                }
+                for (Kind kind : Kind.values()) {
+                    for (Operation op : operations()) {
+                        for (int i = 0; i < warmups; i++) {
+                            op.run(op.setUp(kind, keys), keys, probes, mix);
+                        }
+                        long best = Long.MAX_VALUE;
+                        long bytes = 0;
+                        long gcs = 0;
+                        long ops = 0;
+                        double[] depth = null;
+                        for (int i = 0; i < iterations; i++) {
+                            Structure s = op.setUp(kind, keys);
+                            long gcBefore = gcCount();
+                            long bytesBefore = allocatedBytes();
+                            long start = System.nanoTime();
+                            ops = op.run(s, keys, probes, mix);
+                            long elapsed = System.nanoTime() - start;
+                            bytes += allocatedBytes() - bytesBefore - overhead;
+                            gcs += gcCount() - gcBefore;
+                            best = Math.min(best, elapsed);
+                            depth = s.depth();
+                        }
+                        System.out.println(String.format("%-10s %-9s %-9s %10d %10.1f %10.1f %8.1f %9s %9s",
+                                kind, op.name, input, n, (double) best / ops, (double) bytes / iterations / ops,
+                                (double) gcs / iterations,
+                                depth == null ? "-" : String.format("%.1f", depth[0]),
+                                depth == null ? "-" : String.format("%.0f", depth[1])));
+                    }
+                }
+            }
+            if (n == maxSize) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,916 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A NavigableMap kept in a treap, a drop-in replacement for TreeMap.
+ *
+ * get, put, remove, floor, ceiling, higher and lower are expected O(log n).
+ * The range views (subMap, headMap, tailMap, descendingMap and the key
+ * sets) are windows onto the same tree: they copy nothing, iterate lazily
+ * by walking successor links, and see every change made to the map.
+ *
+ * Keys are ordered by their natural ordering, or by the comparator given
+ * at construction. Null keys are not permitted; null values are.
+ */
+public class TreapMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    static final class Node<K, V> implements Map.Entry<K, V> {
+        final K key;
+        V value;
+        final double priority;
+        Node<K, V> left;
+        Node<K, V> right;
+        Node<K, V> parent;
+
+        Node(K key, V value, Node<K, V> parent) {
+            this.key = key;
+            this.value = value;
+            this.parent = parent;
+            this.priority = ThreadLocalRandom.current().nextDouble();
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    final Comparator<? super K> comparator;
+    Node<K, V> root;
+    int size;
+    int modCount;
+    // the whole map as a view, which the navigation methods delegate to
+    private final View<K, V> all = new View<>(this, true, null, true, true, null, true, false);
+
+    public TreapMap() {
+        this.comparator = null;
+    }
+
+    public TreapMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    public TreapMap(Map<? extends K, ? extends V> m) {
+        this.comparator = m instanceof SortedMap ? (Comparator<? super K>) ((SortedMap<K, ?>) m).comparator() : null;
+        putAll(m);
+    }
+
+    @SuppressWarnings("unchecked")
+    final int compare(Object a, Object b) {
+        return comparator == null ? ((Comparable<Object>) a).compareTo(b) : comparator.compare((K) a, (K) b);
+    }
+
+    // the tree
+
+    final Node<K, V> getEntry(Object key) {
+        Node<K, V> n = root;
+        while (n != null) {
+            int c = compare(key, n.key);
+            if (c == 0) {
+                return n;
+            }
+            n = c < 0 ? n.left : n.right;
+        }
+        return null;
+    }
+
+    /**
+     * @return the least entry greater than key, or equal to it if inclusive
+     */
+    final Node<K, V> ceiling(Object key, boolean inclusive) {
+        Node<K, V> best = null;
+        Node<K, V> n = root;
+        while (n != null) {
+            int c = compare(key, n.key);
+            if (c < 0 || (c == 0 && inclusive)) {
+                best = n;
+                if (c == 0) {
+                    break;
+                }
+                n = n.left;
+            } else {
+                n = n.right;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the greatest entry less than key, or equal to it if inclusive
+     */
+    final Node<K, V> floor(Object key, boolean inclusive) {
+        Node<K, V> best = null;
+        Node<K, V> n = root;
+        while (n != null) {
+            int c = compare(key, n.key);
+            if (c > 0 || (c == 0 && inclusive)) {
+                best = n;
+                if (c == 0) {
+                    break;
+                }
+                n = n.right;
+            } else {
+                n = n.left;
+            }
+        }
+        return best;
+    }
+
+    final Node<K, V> first() {
+        Node<K, V> n = root;
+        if (n != null) {
+            while (n.left != null) {
+                n = n.left;
+            }
+        }
+        return n;
+    }
+
+    final Node<K, V> last() {
+        Node<K, V> n = root;
+        if (n != null) {
+            while (n.right != null) {
+                n = n.right;
+            }
+        }
+        return n;
+    }
+
+    static <K, V> Node<K, V> successor(Node<K, V> n) {
+        if (n.right != null) {
+            n = n.right;
+            while (n.left != null) {
+                n = n.left;
+            }
+            return n;
+        }
+        while (n.parent != null && n == n.parent.right) {
+            n = n.parent;
+        }
+        return n.parent;
+    }
+
+    static <K, V> Node<K, V> predecessor(Node<K, V> n) {
+        if (n.left != null) {
+            n = n.left;
+            while (n.right != null) {
+                n = n.right;
+            }
+            return n;
+        }
+        while (n.parent != null && n == n.parent.left) {
+            n = n.parent;
+        }
+        return n.parent;
+    }
+
+    /**
+     * Rotate x above its parent, keeping the in-order sequence.
+     */
+    private void rotateUp(Node<K, V> x) {
+        Node<K, V> p = x.parent;
+        Node<K, V> g = p.parent;
+        if (x == p.left) {
+            p.left = x.right;
+            if (x.right != null) {
+                x.right.parent = p;
+            }
+            x.right = p;
+        } else {
+            p.right = x.left;
+            if (x.left != null) {
+                x.left.parent = p;
+            }
+            x.left = p;
+        }
+        p.parent = x;
+        x.parent = g;
+        replaceChild(g, p, x);
+    }
+
+    private void replaceChild(Node<K, V> parent, Node<K, V> old, Node<K, V> n) {
+        if (parent == null) {
+            root = n;
+        } else if (parent.left == old) {
+            parent.left = n;
+        } else {
+            parent.right = n;
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (root == null) {
+            // type and null check, as TreeMap does
+            compare(key, key);
+            root = new Node<>(key, value, null);
+            size = 1;
+            modCount++;
+            return null;
+        }
+        Node<K, V> n = root;
+        while (true) {
+            int c = compare(key, n.key);
+            if (c == 0) {
+                return n.setValue(value);
+            }
+            Node<K, V> next = c < 0 ? n.left : n.right;
+            if (next == null) {
+                Node<K, V> e = new Node<>(key, value, n);
+                if (c < 0) {
+                    n.left = e;
+                } else {
+                    n.right = e;
+                }
+                while (e.parent != null && e.parent.priority < e.priority) {
+                    rotateUp(e);
+                }
+                size++;
+                modCount++;
+                return null;
+            }
+            n = next;
+        }
+    }
+
+    /**
+     * Unlink e from the tree, by rotating it down until it has at most one
+     * child. Rotations keep the in-order sequence, so every other entry, and
+     * an iterator's next entry in particular, stays where it was.
+     */
+    final void deleteEntry(Node<K, V> e) {
+        while (e.left != null && e.right != null) {
+            rotateUp(e.left.priority > e.right.priority ? e.left : e.right);
+        }
+        Node<K, V> child = e.left != null ? e.left : e.right;
+        if (child != null) {
+            child.parent = e.parent;
+        }
+        replaceChild(e.parent, e, child);
+        e.left = e.right = e.parent = null;
+        size--;
+        modCount++;
+    }
+
+    // Map
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getEntry(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> e = getEntry(key);
+        return e == null ? null : e.value;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<K, V> e = getEntry(key);
+        if (e == null) {
+            return null;
+        }
+        V old = e.value;
+        deleteEntry(e);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return all.entrySet();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    // NavigableMap, by way of the view of everything
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public K firstKey() {
+        return all.firstKey();
+    }
+
+    @Override
+    public K lastKey() {
+        return all.lastKey();
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return all.lowerEntry(key);
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return all.lowerKey(key);
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return all.floorEntry(key);
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return all.floorKey(key);
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return all.ceilingEntry(key);
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return all.ceilingKey(key);
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        return all.higherEntry(key);
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return all.higherKey(key);
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return all.firstEntry();
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return all.lastEntry();
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        return all.pollFirstEntry();
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        return all.pollLastEntry();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return all.descendingMap();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return all.navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return all.descendingKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return all.subMap(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return all.headMap(toKey, inclusive);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return all.tailMap(fromKey, inclusive);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    static <K, V> Map.Entry<K, V> export(Node<K, V> e) {
+        return e == null ? null : new AbstractMap.SimpleImmutableEntry<>(e);
+    }
+
+    static <K> K keyOrNull(Node<K, ?> e) {
+        return e == null ? null : e.key;
+    }
+
+    static <K> K key(Node<K, ?> e) {
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+        return e.key;
+    }
+
+    /**
+     * The keys between two optional bounds, in ascending or descending
+     * order, as a map backed by the treap.
+     *
+     * Navigation is worked out in ascending ("absolute") terms against the
+     * bounds, and a descending view swaps the directions: its lowerEntry is
+     * the absolute higher entry, and so on.
+     */
+    static final class View<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+        final TreapMap<K, V> m;
+        final boolean fromStart;
+        final K lo;
+        final boolean loInclusive;
+        final boolean toEnd;
+        final K hi;
+        final boolean hiInclusive;
+        final boolean descending;
+
+        View(TreapMap<K, V> m, boolean fromStart, K lo, boolean loInclusive,
+                boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+            if (!fromStart && !toEnd && m.compare(lo, hi) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            this.m = m;
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        boolean tooLow(Object key) {
+            if (fromStart) {
+                return false;
+            }
+            int c = m.compare(key, lo);
+            return c < 0 || (c == 0 && !loInclusive);
+        }
+
+        boolean tooHigh(Object key) {
+            if (toEnd) {
+                return false;
+            }
+            int c = m.compare(key, hi);
+            return c > 0 || (c == 0 && !hiInclusive);
+        }
+
+        boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        // whether a bound for a narrower view is inside this one; an
+        // exclusive bound may equal this view's exclusive bound
+        boolean inRange(Object key, boolean inclusive) {
+            if (inclusive) {
+                return inRange(key);
+            }
+            return (fromStart || m.compare(key, lo) >= 0) && (toEnd || m.compare(hi, key) >= 0);
+        }
+
+        Node<K, V> absLowest() {
+            Node<K, V> e = fromStart ? m.first() : m.ceiling(lo, loInclusive);
+            return e == null || tooHigh(e.key) ? null : e;
+        }
+
+        Node<K, V> absHighest() {
+            Node<K, V> e = toEnd ? m.last() : m.floor(hi, hiInclusive);
+            return e == null || tooLow(e.key) ? null : e;
+        }
+
+        Node<K, V> absCeiling(Object key, boolean inclusive) {
+            if (tooLow(key)) {
+                return absLowest();
+            }
+            Node<K, V> e = m.ceiling(key, inclusive);
+            return e == null || tooHigh(e.key) ? null : e;
+        }
+
+        Node<K, V> absFloor(Object key, boolean inclusive) {
+            if (tooHigh(key)) {
+                return absHighest();
+            }
+            Node<K, V> e = m.floor(key, inclusive);
+            return e == null || tooLow(e.key) ? null : e;
+        }
+
+        Node<K, V> lowest() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        Node<K, V> highest() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        Node<K, V> lower(Object key, boolean inclusive) {
+            return descending ? absCeiling(key, inclusive) : absFloor(key, inclusive);
+        }
+
+        Node<K, V> higher(Object key, boolean inclusive) {
+            return descending ? absFloor(key, inclusive) : absCeiling(key, inclusive);
+        }
+
+        // Map
+
+        @Override
+        public int size() {
+            if (fromStart && toEnd) {
+                return m.size;
+            }
+            int n = 0;
+            for (Node<K, V> e = absLowest(); e != null && !tooHigh(e.key); e = successor(e)) {
+                n++;
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return fromStart && toEnd ? m.size == 0 : absLowest() == null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return inRange(key) && m.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return inRange(key) ? m.get(key) : null;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (!inRange(key)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            return m.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return inRange(key) ? m.remove(key) : null;
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new EntrySet();
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator<>(View.this);
+            }
+
+            @Override
+            public int size() {
+                return View.this.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return View.this.isEmpty();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                if (!inRange(e.getKey())) {
+                    return false;
+                }
+                Node<K, V> n = m.getEntry(e.getKey());
+                return n != null && Objects.equals(n.value, e.getValue());
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!contains(o)) {
+                    return false;
+                }
+                m.deleteEntry(m.getEntry(((Map.Entry<?, ?>) o).getKey()));
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                View.this.clear();
+            }
+        }
+
+        @Override
+        public void clear() {
+            if (fromStart && toEnd) {
+                m.clear();
+                return;
+            }
+            Node<K, V> e = absLowest();
+            while (e != null && !tooHigh(e.key)) {
+                Node<K, V> next = successor(e);
+                m.deleteEntry(e);
+                e = next;
+            }
+        }
+
+        // NavigableMap
+
+        @Override
+        public Comparator<? super K> comparator() {
+            if (!descending) {
+                return m.comparator;
+            }
+            return m.comparator == null ? Collections.reverseOrder() : Collections.reverseOrder(m.comparator);
+        }
+
+        @Override
+        public K firstKey() {
+            return key(lowest());
+        }
+
+        @Override
+        public K lastKey() {
+            return key(highest());
+        }
+
+        @Override
+        public Map.Entry<K, V> lowerEntry(K key) {
+            return export(lower(key, false));
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return keyOrNull(lower(key, false));
+        }
+
+        @Override
+        public Map.Entry<K, V> floorEntry(K key) {
+            return export(lower(key, true));
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return keyOrNull(lower(key, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> ceilingEntry(K key) {
+            return export(higher(key, true));
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return keyOrNull(higher(key, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> higherEntry(K key) {
+            return export(higher(key, false));
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return keyOrNull(higher(key, false));
+        }
+
+        @Override
+        public Map.Entry<K, V> firstEntry() {
+            return export(lowest());
+        }
+
+        @Override
+        public Map.Entry<K, V> lastEntry() {
+            return export(highest());
+        }
+
+        @Override
+        public Map.Entry<K, V> pollFirstEntry() {
+            Node<K, V> e = lowest();
+            Map.Entry<K, V> result = export(e);
+            if (e != null) {
+                m.deleteEntry(e);
+            }
+            return result;
+        }
+
+        @Override
+        public Map.Entry<K, V> pollLastEntry() {
+            Node<K, V> e = highest();
+            Map.Entry<K, V> result = export(e);
+            if (e != null) {
+                m.deleteEntry(e);
+            }
+            return result;
+        }
+
+        @Override
+        public NavigableMap<K, V> descendingMap() {
+            return new View<>(m, fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            return new TreapSet<>(this, true);
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            if (!inRange(fromKey, fromInclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            if (!inRange(toKey, toInclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            if (descending) {
+                return new View<>(m, false, toKey, toInclusive, false, fromKey, fromInclusive, true);
+            }
+            return new View<>(m, false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+            if (!inRange(toKey, inclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            if (descending) {
+                return new View<>(m, false, toKey, inclusive, toEnd, hi, hiInclusive, true);
+            }
+            return new View<>(m, fromStart, lo, loInclusive, false, toKey, inclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            if (!inRange(fromKey, inclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            if (descending) {
+                return new View<>(m, fromStart, lo, loInclusive, false, fromKey, inclusive, true);
+            }
+            return new View<>(m, false, fromKey, inclusive, toEnd, hi, hiInclusive, false);
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+    }
+
+    /**
+     * Walks a view's entries in its order, one successor (or predecessor)
+     * step at a time, stopping at the view's far bound.
+     */
+    static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        final View<K, V> view;
+        Node<K, V> next;
+        Node<K, V> lastReturned;
+        int expectedModCount;
+
+        EntryIterator(View<K, V> view) {
+            this.view = view;
+            this.next = view.lowest();
+            this.expectedModCount = view.m.modCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            if (view.m.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            lastReturned = next;
+            if (view.descending) {
+                next = predecessor(next);
+                if (next != null && view.tooLow(next.key)) {
+                    next = null;
+                }
+            } else {
+                next = successor(next);
+                if (next != null && view.tooHigh(next.key)) {
+                    next = null;
+                }
+            }
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (view.m.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            view.m.deleteEntry(lastReturned);
+            lastReturned = null;
+            expectedModCount = view.m.modCount;
+        }
+    }
+}
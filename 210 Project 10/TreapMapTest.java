@@ -0,0 +1,229 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+
+public class TreapMapTest {
+
+   private static boolean isValid(TreapMap.Node<Integer, ?> n, TreapMap.Node<Integer, ?> parent, Integer lo, Integer hi) {
+      if (n == null) {
+         return true;
+      }
+      if (n.parent != parent || (parent != null && n.priority > parent.priority)) {
+         return false;
+      }
+      if ((lo != null && n.key <= lo) || (hi != null && n.key >= hi)) {
+         return false;
+      }
+      return isValid(n.left, n, lo, n.key) && isValid(n.right, n, n.key, hi);
+   }
+
+   /**
+    * Check that a view agrees with the same view of a TreeMap on everything
+    * that reads it.
+    */
+   private static void assertSameMap(NavigableMap<Integer, Integer> expected, NavigableMap<Integer, Integer> actual,
+         Random r) {
+      assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()));
+      assertEquals(expected.size(), actual.size());
+      assertEquals(expected.isEmpty(), actual.isEmpty());
+      assertEquals(expected, actual);
+      assertEquals(expected.hashCode(), actual.hashCode());
+      assertEquals(expected.firstEntry(), actual.firstEntry());
+      assertEquals(expected.lastEntry(), actual.lastEntry());
+      assertEquals(new ArrayList<>(expected.navigableKeySet()), new ArrayList<>(actual.navigableKeySet()));
+      assertEquals(new ArrayList<>(expected.descendingKeySet()), new ArrayList<>(actual.descendingKeySet()));
+      assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(actual.values()));
+      for (int i = 0; i < 20; i++) {
+         int k = r.nextInt(120) - 10;
+         assertEquals(expected.lowerEntry(k), actual.lowerEntry(k));
+         assertEquals(expected.floorEntry(k), actual.floorEntry(k));
+         assertEquals(expected.ceilingEntry(k), actual.ceilingEntry(k));
+         assertEquals(expected.higherEntry(k), actual.higherEntry(k));
+         assertEquals(expected.higherKey(k), actual.higherKey(k));
+         assertEquals(expected.containsKey(k), actual.containsKey(k));
+         assertEquals(expected.get(k), actual.get(k));
+      }
+   }
+
+   private static Class<?> outcome(Runnable action) {
+      try {
+         action.run();
+         return null;
+      } catch (RuntimeException e) {
+         return e.getClass();
+      }
+   }
+
+   private static final class Pair {
+      NavigableMap<Integer, Integer> expected;
+      NavigableMap<Integer, Integer> actual;
+
+      Pair(NavigableMap<Integer, Integer> expected, NavigableMap<Integer, Integer> actual) {
+         this.expected = expected;
+         this.actual = actual;
+      }
+   }
+
+   /**
+    * Narrow both maps to the same random view, or leave them be if both
+    * reject the bounds.
+    */
+   private static Pair randomView(Pair p, Random r) {
+      int a = r.nextInt(120) - 10;
+      int b = r.nextInt(120) - 10;
+      boolean ai = r.nextBoolean();
+      boolean bi = r.nextBoolean();
+      List<NavigableMap<Integer, Integer>> views = new ArrayList<>();
+      int choice = r.nextInt(4);
+      for (NavigableMap<Integer, Integer> m : Arrays.asList(p.expected, p.actual)) {
+         try {
+            switch (choice) {
+            case 0:
+               views.add(m.subMap(Math.min(a, b), ai, Math.max(a, b), bi));
+               break;
+            case 1:
+               views.add(m.headMap(a, ai));
+               break;
+            case 2:
+               views.add(m.tailMap(a, ai));
+               break;
+            default:
+               views.add(m.descendingMap());
+            }
+         } catch (IllegalArgumentException e) {
+            views.add(null);
+         }
+      }
+      assertEquals(views.get(0) == null, views.get(1) == null);
+      return views.get(0) == null ? p : new Pair(views.get(0), views.get(1));
+   }
+
+   @Test
+   public void testAgainstTreeMap200Randomized() throws Exception {
+      for (int seed = 0; seed < 200; seed++) {
+         Random r = new Random(seed);
+         TreapMap<Integer, Integer> map = new TreapMap<>();
+         Pair whole = new Pair(new TreeMap<>(), map);
+         for (int i = 0; i < 300; i++) {
+            Pair p = whole;
+            for (int depth = r.nextInt(3); depth > 0; depth--) {
+               p = randomView(p, r);
+            }
+            int k = r.nextInt(100);
+            int v = r.nextInt(1000);
+            Pair q = p;
+            switch (r.nextInt(6)) {
+            case 0:
+            case 1:
+            case 2:
+               assertEquals(outcome(() -> q.expected.put(k, v)), outcome(() -> q.actual.put(k, v)));
+               break;
+            case 3:
+               assertEquals(q.expected.remove(k), q.actual.remove(k));
+               break;
+            case 4:
+               assertEquals(q.expected.pollFirstEntry(), q.actual.pollFirstEntry());
+               break;
+            default:
+               assertEquals(q.expected.pollLastEntry(), q.actual.pollLastEntry());
+            }
+            assertSameMap(p.expected, p.actual, r);
+         }
+         assertTrue(isValid(map.root, null, null, null));
+         assertSameMap(whole.expected, whole.actual, r);
+      }
+   }
+
+   @Test
+   public void testIteratorRemove() throws Exception {
+      TreapMap<Integer, Integer> map = new TreapMap<>();
+      TreeMap<Integer, Integer> expected = new TreeMap<>();
+      for (int i = 0; i < 1000; i++) {
+         map.put(i, i * i);
+         expected.put(i, i * i);
+      }
+      Iterator<Map.Entry<Integer, Integer>> it = map.subMap(100, true, 900, false).entrySet().iterator();
+      while (it.hasNext()) {
+         if (it.next().getKey() % 3 != 0) {
+            it.remove();
+         }
+      }
+      expected.subMap(100, true, 900, false).entrySet().removeIf(e -> e.getKey() % 3 != 0);
+      assertEquals(expected, map);
+      assertTrue(isValid(map.root, null, null, null));
+
+      map.descendingMap().headMap(500).clear();
+      expected.descendingMap().headMap(500).clear();
+      assertEquals(expected, map);
+      assertTrue(isValid(map.root, null, null, null));
+   }
+
+   @Test(expected = ConcurrentModificationException.class)
+   public void testConcurrentModification() throws Exception {
+      TreapMap<Integer, Integer> map = new TreapMap<>();
+      map.put(1, 1);
+      map.put(2, 2);
+      Iterator<Integer> it = map.keySet().iterator();
+      it.next();
+      map.put(3, 3);
+      it.next();
+   }
+
+   @Test
+   public void testViewsAreLive() throws Exception {
+      TreapMap<Integer, String> map = new TreapMap<>();
+      NavigableMap<Integer, String> tail = map.tailMap(10, true);
+      assertTrue(tail.isEmpty());
+      map.put(5, "five");
+      map.put(15, "fifteen");
+      assertEquals(1, tail.size());
+      assertEquals("fifteen", tail.get(15));
+      assertNull(tail.get(5));
+      tail.entrySet().iterator().next().setValue("FIFTEEN");
+      assertEquals("FIFTEEN", map.get(15));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testPutOutOfRange() throws Exception {
+      new TreapMap<Integer, Integer>().headMap(10).put(10, 0);
+   }
+
+   @Test(expected = NoSuchElementException.class)
+   public void testFirstKeyEmpty() throws Exception {
+      new TreapMap<Integer, Integer>().firstKey();
+   }
+
+   @Test
+   public void testComparatorAndNullValues() throws Exception {
+      TreapMap<String, Integer> map = new TreapMap<>(Collections.reverseOrder());
+      map.put("a", null);
+      map.put("c", 3);
+      map.put("b", 2);
+      assertEquals("[c, b, a]", map.keySet().toString());
+      assertTrue(map.containsKey("a"));
+      assertTrue(map.keySet().remove("a"));
+      assertFalse(map.keySet().remove("a"));
+      assertEquals("c", map.firstKey());
+      assertEquals("b", map.descendingMap().firstKey());
+      assertEquals(map, new TreapMap<>(map));
+   }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+
+/**
+ * A NavigableSet kept in a treap, a drop-in replacement for TreeSet.
+ *
+ * As TreeSet is to TreeMap, this is the key set of a TreapMap, so it has
+ * the same costs: expected O(log n) add, remove, contains, floor, ceiling,
+ * higher and lower, and range views that copy nothing and iterate lazily.
+ * The same class also serves as the key set views of a TreapMap, which
+ * cannot be added to.
+ */
+public class TreapSet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private static final Object PRESENT = new Object();
+
+    private final NavigableMap<E, Object> m;
+    // true for a TreapMap's key set, whose values are not ours to invent
+    private final boolean keysOnly;
+
+    @SuppressWarnings("unchecked")
+    TreapSet(NavigableMap<E, ?> m, boolean keysOnly) {
+        this.m = (NavigableMap<E, Object>) m;
+        this.keysOnly = keysOnly;
+    }
+
+    public TreapSet() {
+        this(new TreapMap<E, Object>(), false);
+    }
+
+    public TreapSet(Comparator<? super E> comparator) {
+        this(new TreapMap<E, Object>(comparator), false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public TreapSet(Collection<? extends E> c) {
+        this(c instanceof SortedSet ? ((SortedSet<E>) c).comparator() : null);
+        addAll(c);
+    }
+
+    private TreapSet<E> wrap(NavigableMap<E, Object> view) {
+        return new TreapSet<>(view, keysOnly);
+    }
+
+    /**
+     * Iterates over the keys of a map's entries.
+     */
+    private static final class KeyIterator<E> implements Iterator<E> {
+        final Iterator<? extends Map.Entry<E, ?>> entries;
+
+        KeyIterator(Iterator<? extends Map.Entry<E, ?>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return entries.hasNext();
+        }
+
+        @Override
+        public E next() {
+            return entries.next().getKey();
+        }
+
+        @Override
+        public void remove() {
+            entries.remove();
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new KeyIterator<>(m.entrySet().iterator());
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new KeyIterator<>(m.descendingMap().entrySet().iterator());
+    }
+
+    @Override
+    public int size() {
+        return m.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return m.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return m.containsKey(o);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (keysOnly) {
+            throw new UnsupportedOperationException();
+        }
+        return m.put(e, PRESENT) == null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (keysOnly) {
+            // the value may be null, so ask first
+            if (!m.containsKey(o)) {
+                return false;
+            }
+            m.remove(o);
+            return true;
+        }
+        return m.remove(o) == PRESENT;
+    }
+
+    @Override
+    public void clear() {
+        m.clear();
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return m.comparator();
+    }
+
+    @Override
+    public E first() {
+        return m.firstKey();
+    }
+
+    @Override
+    public E last() {
+        return m.lastKey();
+    }
+
+    @Override
+    public E lower(E e) {
+        return m.lowerKey(e);
+    }
+
+    @Override
+    public E floor(E e) {
+        return m.floorKey(e);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return m.ceilingKey(e);
+    }
+
+    @Override
+    public E higher(E e) {
+        return m.higherKey(e);
+    }
+
+    @Override
+    public E pollFirst() {
+        Map.Entry<E, ?> e = m.pollFirstEntry();
+        return e == null ? null : e.getKey();
+    }
+
+    @Override
+    public E pollLast() {
+        Map.Entry<E, ?> e = m.pollLastEntry();
+        return e == null ? null : e.getKey();
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return wrap(m.descendingMap());
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return wrap(m.subMap(fromElement, fromInclusive, toElement, toInclusive));
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return wrap(m.headMap(toElement, inclusive));
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return wrap(m.tailMap(fromElement, inclusive));
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
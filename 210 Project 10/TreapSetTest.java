@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+
+public class TreapSetTest {
+
+   private static void assertSameSet(NavigableSet<Integer> expected, NavigableSet<Integer> actual, Random r) {
+      assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+      assertEquals(expected.size(), actual.size());
+      assertEquals(expected, actual);
+      assertEquals(expected.isEmpty() ? null : expected.first(), actual.isEmpty() ? null : actual.first());
+      assertEquals(expected.isEmpty() ? null : expected.last(), actual.isEmpty() ? null : actual.last());
+      Iterator<Integer> d = actual.descendingIterator();
+      for (Iterator<Integer> e = expected.descendingIterator(); e.hasNext();) {
+         assertEquals(e.next(), d.next());
+      }
+      assertFalse(d.hasNext());
+      for (int i = 0; i < 20; i++) {
+         int x = r.nextInt(120) - 10;
+         assertEquals(expected.lower(x), actual.lower(x));
+         assertEquals(expected.floor(x), actual.floor(x));
+         assertEquals(expected.ceiling(x), actual.ceiling(x));
+         assertEquals(expected.higher(x), actual.higher(x));
+         assertEquals(expected.contains(x), actual.contains(x));
+      }
+   }
+
+   @Test
+   public void testAgainstTreeSet200Randomized() throws Exception {
+      for (int seed = 0; seed < 200; seed++) {
+         Random r = new Random(seed);
+         TreeSet<Integer> expected = new TreeSet<>();
+         TreapSet<Integer> actual = new TreapSet<>();
+         for (int i = 0; i < 300; i++) {
+            int x = r.nextInt(100);
+            switch (r.nextInt(5)) {
+            case 0:
+            case 1:
+            case 2:
+               assertEquals(expected.add(x), actual.add(x));
+               break;
+            case 3:
+               assertEquals(expected.remove(x), actual.remove(x));
+               break;
+            default:
+               assertEquals(expected.pollFirst(), actual.pollFirst());
+            }
+         }
+         assertSameSet(expected, actual, r);
+
+         int a = r.nextInt(100);
+         int b = a + r.nextInt(50);
+         assertSameSet(expected.subSet(a, true, b, false), actual.subSet(a, true, b, false), r);
+         assertSameSet(expected.headSet(a, true), actual.headSet(a, true), r);
+         assertSameSet(expected.tailSet(b, false), actual.tailSet(b, false), r);
+         assertSameSet(expected.descendingSet(), actual.descendingSet(), r);
+         assertSameSet(expected.descendingSet().headSet(b, true), actual.descendingSet().headSet(b, true), r);
+         assertSameSet(expected.descendingSet().subSet(b, false, a, true),
+               actual.descendingSet().subSet(b, false, a, true), r);
+
+         // changes through a view reach the set
+         NavigableSet<Integer> ev = expected.tailSet(a, true);
+         NavigableSet<Integer> av = actual.tailSet(a, true);
+         assertEquals(ev.pollLast(), av.pollLast());
+         assertEquals(ev.add(a + 1), av.add(a + 1));
+         assertSameSet(expected, actual, r);
+      }
+   }
+
+   @Test
+   public void testFromCollection() throws Exception {
+      TreapSet<Integer> s = new TreapSet<>(Arrays.asList(5, 1, 4, 1, 3));
+      assertEquals(Arrays.asList(1, 3, 4, 5), new ArrayList<>(s));
+      TreapSet<Integer> reversed = new TreapSet<>(new TreeSet<>(s).descendingSet());
+      assertEquals(Arrays.asList(5, 4, 3, 1), new ArrayList<>(reversed));
+   }
+
+   @Test(expected = UnsupportedOperationException.class)
+   public void testMapKeySetAdd() throws Exception {
+      new TreapMap<Integer, Integer>().keySet().add(1);
+   }
+}
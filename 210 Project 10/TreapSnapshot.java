@@ -0,0 +1,343 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+/**
+ * Saves a Treap to a compact binary snapshot, and loads it back in linear
+ * time.
+ *
+ * A snapshot is a 16-byte header, holding a magic number, the format
+ * version and the element count, followed by one record per element in
+ * ascending order: the node's priority as a double, then the element as
+ * written by a KeyCodec. Since the priorities are kept, loading rebuilds
+ * exactly the tree that was saved, bottom-up as a Cartesian tree (see
+ * Treap.Builder), with no searches and no rotations.
+ *
+ * Both directions stream through a fixed buffer, so neither holds more
+ * than the tree itself and a buffer in memory: save walks the tree in
+ * order as it writes, and load(channel) reads from any channel, such as a
+ * socket. load(Path) maps the file instead, a window at a time, which
+ * skips the copy into a buffer.
+ */
+public class TreapSnapshot {
+    static final int MAGIC = 0x54524550; // "TREP"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int DEFAULT_BUFFER_BYTES = 1 << 16;
+    // how much of a file load(Path) maps at a time
+    static final int WINDOW_BYTES = 1 << 30;
+
+    /**
+     * Writes and reads elements of type E to and from buffers.
+     *
+     * write may throw BufferOverflowException, and read
+     * BufferUnderflowException, when the buffer runs out; the caller then
+     * makes more room or reads more bytes and calls it again for the same
+     * element, so neither should have any other effect before it throws.
+     */
+    public interface KeyCodec<E> {
+        void write(E e, ByteBuffer out);
+
+        E read(ByteBuffer in);
+    }
+
+    public static final KeyCodec<Integer> INTEGER = new KeyCodec<Integer>() {
+        public void write(Integer e, ByteBuffer out) {
+            out.putInt(e);
+        }
+
+        public Integer read(ByteBuffer in) {
+            return in.getInt();
+        }
+    };
+
+    public static final KeyCodec<Long> LONG = new KeyCodec<Long>() {
+        public void write(Long e, ByteBuffer out) {
+            out.putLong(e);
+        }
+
+        public Long read(ByteBuffer in) {
+            return in.getLong();
+        }
+    };
+
+    public static final KeyCodec<Double> DOUBLE = new KeyCodec<Double>() {
+        public void write(Double e, ByteBuffer out) {
+            out.putDouble(e);
+        }
+
+        public Double read(ByteBuffer in) {
+            return in.getDouble();
+        }
+    };
+
+    /**
+     * Strings as their length in bytes followed by their UTF-8 encoding.
+     */
+    public static final KeyCodec<String> STRING = new KeyCodec<String>() {
+        public void write(String e, ByteBuffer out) {
+            byte[] bytes = e.getBytes(StandardCharsets.UTF_8);
+            if (out.remaining() < Integer.BYTES + bytes.length) {
+                throw new BufferOverflowException();
+            }
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+
+        public String read(ByteBuffer in) {
+            if (in.remaining() < Integer.BYTES) {
+                throw new BufferUnderflowException();
+            }
+            int length = in.getInt(in.position());
+            if (length < 0) {
+                throw new IllegalArgumentException("negative string length " + length);
+            }
+            if (in.remaining() < Integer.BYTES + length) {
+                throw new BufferUnderflowException();
+            }
+            byte[] bytes = new byte[length];
+            in.position(in.position() + Integer.BYTES);
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Write a snapshot of t to file, replacing it if it exists.
+     * @param t
+     * @param codec
+     * @param file
+     * @throws IOException
+     */
+    public static <E extends Comparable<E>> void save(Treap<E> t, KeyCodec<E> codec, Path file) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            save(t, codec, out);
+        }
+    }
+
+    /**
+     * Write a snapshot of t to a channel, walking the tree in order as it
+     * goes.
+     * @param t
+     * @param codec
+     * @param out
+     * @throws IOException
+     */
+    public static <E extends Comparable<E>> void save(Treap<E> t, KeyCodec<E> codec, WritableByteChannel out)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_BYTES);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(t.size());
+        ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+        for (Node<E> n = t.root; n != null; n = n.left) {
+            stack.push(n);
+        }
+        while (!stack.isEmpty()) {
+            Node<E> n = stack.pop();
+            for (Node<E> m = n.right; m != null; m = m.left) {
+                stack.push(m);
+            }
+            while (true) {
+                int start = buffer.position();
+                try {
+                    buffer.putDouble(n.priority);
+                    codec.write(n.data, buffer);
+                    break;
+                } catch (BufferOverflowException e) {
+                    buffer.position(start);
+                    if (start == 0) {
+                        // a single record is bigger than the buffer
+                        buffer = ByteBuffer.allocateDirect(2 * buffer.capacity());
+                    } else {
+                        flush(buffer, out);
+                    }
+                }
+            }
+        }
+        flush(buffer, out);
+    }
+
+    private static void flush(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Where load reads records from: a buffer, and a way to get more bytes
+     * into it once a record runs off its end.
+     */
+    private abstract static class Input {
+        ByteBuffer buffer;
+
+        /**
+         * Make more bytes available after the buffer's position, keeping the
+         * bytes from the position on.
+         * @return false if there are no more bytes
+         */
+        abstract boolean refill() throws IOException;
+    }
+
+    private static final class ChannelInput extends Input {
+        final ReadableByteChannel in;
+
+        ChannelInput(ReadableByteChannel in, int bufferBytes) {
+            this.in = in;
+            buffer = ByteBuffer.allocateDirect(bufferBytes);
+            buffer.flip();
+        }
+
+        @Override
+        boolean refill() throws IOException {
+            if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                // a single record is bigger than the buffer
+                if (buffer.capacity() > Integer.MAX_VALUE / 2) {
+                    throw new IOException("corrupt snapshot: record exceeds buffer");
+                }
+                ByteBuffer bigger = ByteBuffer.allocateDirect(2 * buffer.capacity());
+                bigger.put(buffer);
+                bigger.flip();
+                buffer = bigger;
+            }
+            buffer.compact();
+            int kept = buffer.position();
+            while (buffer.hasRemaining() && in.read(buffer) > 0) {
+                // keep reading until the buffer is full or the input ends
+            }
+            boolean more = buffer.position() > kept;
+            buffer.flip();
+            return more;
+        }
+    }
+
+    private static final class MappedInput extends Input {
+        final FileChannel file;
+        final long length;
+        int window;
+        // the file offset of the buffer's start
+        long base;
+
+        MappedInput(FileChannel file, int window) throws IOException {
+            this.file = file;
+            this.length = file.size();
+            this.window = window;
+            buffer = ByteBuffer.allocate(0);
+        }
+
+        @Override
+        boolean refill() throws IOException {
+            long from = base + buffer.position();
+            if (from + buffer.remaining() >= length) {
+                return false;
+            }
+            if (from == base && buffer.capacity() > 0) {
+                // a single record is bigger than the window
+                if (window == Integer.MAX_VALUE) {
+                    throw new IOException("corrupt snapshot: record exceeds window");
+                }
+                window = (int) Math.min(2L * window, Integer.MAX_VALUE);
+            }
+            base = from;
+            buffer = file.map(FileChannel.MapMode.READ_ONLY, from, Math.min(length - from, window));
+            return true;
+        }
+    }
+
+    /**
+     * Load a snapshot by mapping the file into memory.
+     * @param file
+     * @param codec
+     * @return the treap that was saved
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static <E extends Comparable<E>> Treap<E> load(Path file, KeyCodec<E> codec) throws IOException {
+        return load(file, codec, WINDOW_BYTES);
+    }
+
+    /**
+     * Load a snapshot, mapping window bytes of the file at a time, so that
+     * tests can cross window boundaries without huge files.
+     */
+    static <E extends Comparable<E>> Treap<E> load(Path file, KeyCodec<E> codec, int window) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            return load(new MappedInput(in, window), codec);
+        }
+    }
+
+    /**
+     * Load a snapshot from a channel, reading it through a fixed buffer.
+     * @param in
+     * @param codec
+     * @return the treap that was saved
+     * @throws IOException if the channel cannot be read or does not hold a valid snapshot
+     */
+    public static <E extends Comparable<E>> Treap<E> load(ReadableByteChannel in, KeyCodec<E> codec)
+            throws IOException {
+        return load(new ChannelInput(in, DEFAULT_BUFFER_BYTES), codec);
+    }
+
+    private static <E extends Comparable<E>> Treap<E> load(Input in, KeyCodec<E> codec) throws IOException {
+        while (in.buffer.remaining() < HEADER_BYTES) {
+            if (!in.refill()) {
+                throw new EOFException("no snapshot header");
+            }
+        }
+        if (in.buffer.getInt() != MAGIC) {
+            throw new IOException("not a treap snapshot");
+        }
+        int version = in.buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported snapshot version " + version);
+        }
+        long count = in.buffer.getLong();
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("corrupt snapshot: bad count " + count);
+        }
+
+        Treap.Builder<E> builder = new Treap.Builder<>();
+        E previous = null;
+        for (long i = 0; i < count; i++) {
+            Node<E> n;
+            while (true) {
+                int start = in.buffer.position();
+                try {
+                    double priority = in.buffer.getDouble();
+                    n = new Node<>(codec.read(in.buffer), priority);
+                    break;
+                } catch (BufferUnderflowException e) {
+                    in.buffer.position(start);
+                    if (!in.refill()) {
+                        throw new EOFException("snapshot ends after " + i + " of " + count + " elements");
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException("corrupt snapshot: cannot read element " + i, e);
+                }
+            }
+            if (previous != null && previous.compareTo(n.data) >= 0) {
+                throw new IOException("corrupt snapshot: " + previous + " before " + n.data);
+            }
+            previous = n.data;
+            builder.append(n);
+        }
+        return Treap.of(builder.finish());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2023 Marc Liberatore.
+ */
+
+package treaps;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class TreapSnapshotTest {
+
+   private static <E> boolean sameShape(Node<E> a, Node<E> b) {
+      if (a == null || b == null) {
+         return a == b;
+      }
+      return a.data.equals(b.data) && a.priority == b.priority && a.size == b.size
+            && sameShape(a.left, b.left) && sameShape(a.right, b.right);
+   }
+
+   private static <E> boolean parentsConsistent(Node<E> n, Node<E> parent) {
+      return n == null || (n.parent == parent && parentsConsistent(n.left, n) && parentsConsistent(n.right, n));
+   }
+
+   private static Treap<Integer> randomTreap(int size, long seed) {
+      List<Integer> l = new ArrayList<>();
+      for (int i = 0; i < size; i++) {
+         l.add(i * 3);
+      }
+      Collections.shuffle(l, new Random(seed));
+      Treap<Integer> t = new Treap<>();
+      for (int i : l) {
+         t.add(i);
+      }
+      return t;
+   }
+
+   @Test
+   public void testRoundTripFile() throws Exception {
+      Path file = Files.createTempFile("treap", ".snap");
+      try {
+         for (int size : new int[] { 0, 1, 2, 100, 50_000 }) {
+            Treap<Integer> t = randomTreap(size, size);
+            TreapSnapshot.save(t, TreapSnapshot.INTEGER, file);
+            assertEquals(16 + size * 12L, Files.size(file));
+            Treap<Integer> u = TreapSnapshot.load(file, TreapSnapshot.INTEGER);
+            assertEquals(size, u.size());
+            assertTrue(sameShape(t.root, u.root));
+            assertTrue(parentsConsistent(u.root, null));
+            // records straddling the mapped windows
+            Treap<Integer> v = TreapSnapshot.load(file, TreapSnapshot.INTEGER, 1000);
+            assertTrue(sameShape(t.root, v.root));
+         }
+      } finally {
+         Files.delete(file);
+      }
+   }
+
+   @Test
+   public void testRoundTripStreamingStrings() throws Exception {
+      Treap<String> t = new Treap<>();
+      Random r = new Random(0);
+      for (int i = 0; i < 5000; i++) {
+         // some strings longer than the default buffer
+         int length = i % 1000 == 0 ? 100_000 : r.nextInt(20);
+         char[] c = new char[length];
+         Arrays.fill(c, (char) ('a' + r.nextInt(26)));
+         t.add(new String(c) + "\u00e9" + i);
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      TreapSnapshot.save(t, TreapSnapshot.STRING, Channels.newChannel(bytes));
+      Treap<String> u = TreapSnapshot.load(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())),
+            TreapSnapshot.STRING);
+      assertTrue(sameShape(t.root, u.root));
+      assertTrue(parentsConsistent(u.root, null));
+      assertTrue(Treap.isBST(u.root));
+      assertTrue(Treap.isHeap(u.root));
+   }
+
+   @Test
+   public void testRecordsLongerThanWindow() throws Exception {
+      Treap<String> t = new Treap<>();
+      for (int i = 0; i < 20; i++) {
+         char[] c = new char[i % 5 == 0 ? 5000 : 10];
+         Arrays.fill(c, (char) ('a' + i));
+         t.add(new String(c));
+      }
+      Path file = Files.createTempFile("treap", ".snap");
+      try {
+         TreapSnapshot.save(t, TreapSnapshot.STRING, file);
+         Treap<String> u = TreapSnapshot.load(file, TreapSnapshot.STRING, 1000);
+         assertTrue(sameShape(t.root, u.root));
+         assertTrue(parentsConsistent(u.root, null));
+      } finally {
+         Files.delete(file);
+      }
+   }
+
+   @Test(expected = EOFException.class)
+   public void testTruncated() throws Exception {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      TreapSnapshot.save(randomTreap(100, 0), TreapSnapshot.INTEGER, Channels.newChannel(bytes));
+      byte[] b = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 5);
+      TreapSnapshot.load(Channels.newChannel(new ByteArrayInputStream(b)), TreapSnapshot.INTEGER);
+   }
+
+   @Test(expected = IOException.class)
+   public void testNotASnapshot() throws Exception {
+      byte[] b = new byte[64];
+      TreapSnapshot.load(Channels.newChannel(new ByteArrayInputStream(b)), TreapSnapshot.INTEGER);
+   }
+
+   private static byte[] stringSnapshot(int length) {
+      ByteBuffer b = ByteBuffer.allocate(64);
+      b.putInt(TreapSnapshot.MAGIC).putInt(TreapSnapshot.VERSION).putLong(1);
+      b.putDouble(0.5).putInt(length);
+      return b.array();
+   }
+
+   @Test(expected = IOException.class)
+   public void testNegativeLength() throws Exception {
+      TreapSnapshot.load(Channels.newChannel(new ByteArrayInputStream(stringSnapshot(-5))), TreapSnapshot.STRING);
+   }
+
+   @Test(expected = IOException.class)
+   public void testNegativeLengthMapped() throws Exception {
+      Path file = Files.createTempFile("treap", ".snap");
+      try {
+         Files.write(file, stringSnapshot(-5));
+         TreapSnapshot.load(file, TreapSnapshot.STRING, 16);
+      } finally {
+         Files.delete(file);
+      }
+   }
+
+   @Test(expected = EOFException.class)
+   public void testLengthPastEndMapped() throws Exception {
+      Path file = Files.createTempFile("treap", ".snap");
+      try {
+         Files.write(file, stringSnapshot(Integer.MAX_VALUE - 4));
+         TreapSnapshot.load(file, TreapSnapshot.STRING, 16);
+      } finally {
+         Files.delete(file);
+      }
+   }
+}
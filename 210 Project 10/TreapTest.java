@@ -7,9 +7,17 @@ package treaps;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -64,4 +72,426 @@ public class TreapTest {
          }
       }
    }
-}
\ No newline at end of file
+
+   private static Treap<Integer> treapOf(List<Integer> values) {
+      Treap<Integer> t = new Treap<>();
+      for (int i : values) {
+         t.add(i);
+      }
+      return t;
+   }
+
+   private static boolean sizesConsistent(Node<Integer> n) {
+      if (n == null) {
+         return true;
+      }
+      return n.size == Node.size(n.left) + Node.size(n.right) + 1
+            && sizesConsistent(n.left) && sizesConsistent(n.right);
+   }
+
+   private static void assertValid(Treap<Integer> t, Collection<Integer> expected) {
+      assertTrue(Treap.isBST(t.root));
+      assertTrue(Treap.isHeap(t.root));
+      assertTrue(sizesConsistent(t.root));
+      assertEquals(t.size(), Node.size(t.root));
+      if (t.root != null) {
+         assertNull(t.root.parent);
+      }
+      assertEquals(expected.size(), t.size());
+      assertEquals(new ArrayList<>(new TreeSet<>(expected)), Treap.inOrder(t.root));
+   }
+
+   @Test
+   public void testAddDuplicate() throws Exception {
+      Treap<Integer> t = new Treap<>();
+      t.add(1);
+      t.add(1);
+      assertEquals(1, t.size());
+      assertTrue(Treap.isBST(t.root));
+   }
+
+   @Test
+   public void testSplitJoin100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         List<Integer> l = new ArrayList<>();
+         for (int i = 0; i < 100; i++) {
+            l.add(i);
+         }
+         Collections.shuffle(l, r);
+         Treap<Integer> t = treapOf(l);
+         int key = r.nextInt(110) - 5;
+
+         Treap<Integer> greater = t.split(key);
+         TreeSet<Integer> all = new TreeSet<>(l);
+         assertValid(t, all.headSet(key));
+         assertValid(greater, all.tailSet(key));
+
+         t.join(greater);
+         assertValid(t, all);
+         assertValid(greater, Collections.emptySet());
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testJoinOutOfOrder() throws Exception {
+      Treap<Integer> t = treapOf(Arrays.asList(1, 5));
+      t.join(treapOf(Arrays.asList(3, 7)));
+   }
+
+   @Test
+   public void testSetOperations20Randomized() throws Exception {
+      for (int seed = 0; seed < 20; seed++) {
+         Random r = new Random(seed);
+         List<Integer> la = new ArrayList<>();
+         List<Integer> lb = new ArrayList<>();
+         for (int i = 0; i < 5000; i++) {
+            la.add(r.nextInt(10000));
+            lb.add(r.nextInt(10000));
+         }
+         Set<Integer> union = new TreeSet<>(la);
+         union.addAll(lb);
+         Set<Integer> intersection = new TreeSet<>(la);
+         intersection.retainAll(lb);
+         Set<Integer> difference = new TreeSet<>(la);
+         difference.removeAll(lb);
+
+         assertValid(Treap.union(treapOf(la), treapOf(lb)), union);
+         assertValid(Treap.intersection(treapOf(la), treapOf(lb)), intersection);
+         assertValid(Treap.difference(treapOf(la), treapOf(lb)), difference);
+
+         Treap<Integer> a = treapOf(la);
+         Treap<Integer> b = treapOf(lb);
+         Treap.union(a, b);
+         assertEquals(0, a.size());
+         assertNull(b.root);
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testUnionWithItself() throws Exception {
+      Treap<Integer> t = treapOf(Arrays.asList(1, 2, 3));
+      Treap.union(t, t);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testIntersectionWithItself() throws Exception {
+      Treap<Integer> t = treapOf(Arrays.asList(1, 2, 3));
+      Treap.intersection(t, t);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testDifferenceWithItself() throws Exception {
+      Treap<Integer> t = treapOf(Arrays.asList(1, 2, 3));
+      Treap.difference(t, t);
+   }
+
+   @Test
+   public void testOrderStatistics100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         List<Integer> l = new ArrayList<>();
+         for (int i = 0; i < 200; i++) {
+            l.add(r.nextInt(1000));
+         }
+         Treap<Integer> t = treapOf(l);
+         List<Integer> sorted = new ArrayList<>(new TreeSet<>(l));
+         assertValid(t, sorted);
+
+         for (int k = 0; k < sorted.size(); k++) {
+            assertEquals(sorted.get(k), t.select(k));
+            assertEquals(k, t.rank(sorted.get(k)));
+         }
+         for (int i = 0; i < 20; i++) {
+            int lo = r.nextInt(1100) - 50;
+            int hi = r.nextInt(1100) - 50;
+            int expected = 0;
+            for (int x : sorted) {
+               if (lo <= x && x < hi) {
+                  expected++;
+               }
+            }
+            assertEquals(expected, t.countRange(lo, hi));
+         }
+      }
+   }
+
+   @Test
+   public void testPercentile() throws Exception {
+      Treap<Integer> t = new Treap<>();
+      for (int i = 1; i <= 100; i++) {
+         t.add(i);
+      }
+      assertEquals(Integer.valueOf(1), t.percentile(0));
+      assertEquals(Integer.valueOf(50), t.percentile(0.5));
+      assertEquals(Integer.valueOf(99), t.percentile(0.99));
+      assertEquals(Integer.valueOf(100), t.percentile(1));
+   }
+
+   @Test(expected = IndexOutOfBoundsException.class)
+   public void testSelectOutOfBounds() throws Exception {
+      treapOf(Arrays.asList(1, 2, 3)).select(3);
+   }
+
+   @Test
+   public void testIterator100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         List<Integer> l = new ArrayList<>();
+         int n = r.nextInt(200);
+         for (int i = 0; i < n; i++) {
+            l.add(r.nextInt(1000));
+         }
+         Treap<Integer> t = treapOf(l);
+         List<Integer> expected = new ArrayList<>(new TreeSet<>(l));
+         List<Integer> actual = new ArrayList<>();
+         for (int i : t) {
+            actual.add(i);
+         }
+         assertEquals(expected, actual);
+         assertEquals(expected, Treap.inOrder(t.root));
+      }
+   }
+
+   @Test
+   public void testIteratorEarlyExit() throws Exception {
+      Treap<Integer> t = treapOf(Arrays.asList(5, 3, 8, 1, 4, 7, 9));
+      Iterator<Integer> it = t.iterator();
+      assertEquals(1, (int) it.next());
+      assertEquals(3, (int) it.next());
+      assertTrue(it.hasNext());
+      assertEquals(Arrays.asList(1, 3, 4), t.stream().limit(3).collect(Collectors.toList()));
+   }
+
+   @Test(expected = NoSuchElementException.class)
+   public void testIteratorExhausted() throws Exception {
+      Iterator<Integer> it = treapOf(Arrays.asList(1)).iterator();
+      it.next();
+      it.next();
+   }
+
+   @Test
+   public void testSpliteratorSplits() throws Exception {
+      for (int seed = 0; seed < 20; seed++) {
+         Random r = new Random(seed);
+         List<Integer> l = new ArrayList<>();
+         for (int i = 0; i < 1000; i++) {
+            l.add(i);
+         }
+         Collections.shuffle(l, r);
+         Treap<Integer> t = treapOf(l);
+
+         // split recursively; the pieces, in order, must be exactly sized
+         // and together cover every element once
+         List<Spliterator<Integer>> pieces = new ArrayList<>();
+         pieces.add(t.spliterator());
+         for (int round = 0; round < 6; round++) {
+            List<Spliterator<Integer>> next = new ArrayList<>();
+            for (Spliterator<Integer> s : pieces) {
+               Spliterator<Integer> prefix = s.trySplit();
+               if (prefix != null) {
+                  next.add(prefix);
+               }
+               next.add(s);
+            }
+            pieces = next;
+         }
+         assertTrue(pieces.size() > 8);
+         List<Integer> all = new ArrayList<>();
+         for (Spliterator<Integer> s : pieces) {
+            long size = s.estimateSize();
+            List<Integer> part = new ArrayList<>();
+            s.forEachRemaining(part::add);
+            assertEquals(size, part.size());
+            all.addAll(part);
+         }
+         assertEquals(new ArrayList<>(new TreeSet<>(l)), all);
+      }
+   }
+
+   @Test
+   public void testParallelStream() throws Exception {
+      List<Integer> l = new ArrayList<>();
+      for (int i = 0; i < 100_000; i++) {
+         l.add(i);
+      }
+      Collections.shuffle(l, new Random(0));
+      Treap<Integer> t = treapOf(l);
+      assertEquals(100_000L, t.parallelStream().count());
+      assertEquals(100_000L * 99_999 / 2, t.parallelStream().mapToLong(i -> i).sum());
+      assertEquals(l.size(), t.parallelStream().collect(Collectors.toList()).size());
+      List<Integer> sorted = t.parallelStream().collect(Collectors.toList());
+      for (int i = 0; i < sorted.size(); i++) {
+         assertEquals(i, (int) sorted.get(i));
+      }
+   }
+
+   @Test
+   public void testIterateDeepTree() throws Exception {
+      // a chain far deeper than recursion could handle
+      final int depth = 1_000_000;
+      Treap<Integer> t = new Treap<>();
+      Node<Integer> n = null;
+      for (int i = depth - 1; i >= 0; i--) {
+         Node<Integer> m = new Node<>(i);
+         m.right = n;
+         if (n != null) {
+            n.parent = m;
+         }
+         m.updateSize();
+         n = m;
+      }
+      t.root = n;
+      long count = 0;
+      for (int i : t) {
+         assertEquals(count++, i);
+      }
+      assertEquals(depth, count);
+      assertEquals(depth, Treap.inOrder(t.root).size());
+   }
+
+   @Test
+   public void testFromSorted100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         List<Integer> l = new ArrayList<>();
+         for (int i = r.nextInt(300); i > 0; i--) {
+            l.add(r.nextInt(500));
+         }
+         Collections.sort(l);
+         Treap<Integer> t = Treap.fromSorted(l);
+         assertValid(t, new TreeSet<>(l));
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testFromSortedOutOfOrder() throws Exception {
+      Treap.fromSorted(Arrays.asList(1, 2, 4, 3));
+   }
+
+   @Test
+   public void testFromUnsorted() throws Exception {
+      Random r = new Random(0);
+      Integer[] a = new Integer[100_000];
+      for (int i = 0; i < a.length; i++) {
+         a[i] = r.nextInt();
+      }
+      Integer[] copy = a.clone();
+      Treap<Integer> t = Treap.fromUnsorted(a);
+      assertArrayEquals(copy, a);
+      assertValid(t, new TreeSet<>(Arrays.asList(a)));
+   }
+
+   @Test
+   public void testAddAllSorted20Randomized() throws Exception {
+      for (int seed = 0; seed < 20; seed++) {
+         Random r = new Random(seed);
+         List<Integer> l = new ArrayList<>();
+         for (int i = 0; i < 200; i++) {
+            l.add(r.nextInt(1000));
+         }
+         Treap<Integer> t = treapOf(l);
+         Set<Integer> expected = new TreeSet<>(l);
+
+         // overlapping the existing elements
+         List<Integer> more = new ArrayList<>();
+         for (int i = 0; i < 200; i++) {
+            more.add(r.nextInt(1000));
+         }
+         Collections.sort(more);
+         t.addAllSorted(more);
+         expected.addAll(more);
+         assertValid(t, expected);
+
+         // after the existing elements
+         List<Integer> after = Arrays.asList(1000, 1001, 1005, 2000);
+         t.addAllSorted(after);
+         expected.addAll(after);
+         assertValid(t, expected);
+      }
+      Treap<Integer> empty = new Treap<>();
+      empty.addAllSorted(Arrays.asList(1, 2, 3));
+      assertValid(empty, Arrays.asList(1, 2, 3));
+      empty.addAllSorted(new ArrayList<Integer>());
+      assertValid(empty, Arrays.asList(1, 2, 3));
+   }
+
+   @Test
+   public void testRemove100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         Treap<Integer> t = new Treap<>();
+         TreeSet<Integer> expected = new TreeSet<>();
+         for (int i = 0; i < 400; i++) {
+            int x = r.nextInt(150);
+            if (r.nextInt(3) == 0) {
+               assertEquals(expected.remove(x), t.remove(x));
+            } else {
+               t.add(x);
+               expected.add(x);
+            }
+         }
+         assertValid(t, expected);
+      }
+   }
+
+   @Test
+   public void testPollFirstLast() throws Exception {
+      Treap<Integer> t = new Treap<>();
+      assertNull(t.pollFirst());
+      assertNull(t.pollLast());
+      List<Integer> l = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+         l.add(i);
+      }
+      Collections.shuffle(l, new Random(0));
+      t = treapOf(l);
+      TreeSet<Integer> expected = new TreeSet<>(l);
+      for (int i = 0; i < 50; i++) {
+         assertEquals(expected.pollFirst(), t.pollFirst());
+         assertEquals(expected.pollLast(), t.pollLast());
+         assertValid(t, expected);
+      }
+      assertEquals(0, t.size());
+   }
+
+   @Test
+   public void testRemoveRange100Randomized() throws Exception {
+      for (int seed = 0; seed < 100; seed++) {
+         Random r = new Random(seed);
+         List<Integer> l = new ArrayList<>();
+         for (int i = 0; i < 300; i++) {
+            l.add(r.nextInt(1000));
+         }
+         Treap<Integer> t = treapOf(l);
+         TreeSet<Integer> expected = new TreeSet<>(l);
+         for (int i = 0; i < 5; i++) {
+            int lo = r.nextInt(1100) - 50;
+            int hi = lo + r.nextInt(300) - 20;
+            int before = expected.size();
+            if (lo < hi) {
+               expected.subSet(lo, hi).clear();
+            }
+            assertEquals(before - expected.size(), t.removeRange(lo, hi));
+            assertValid(t, expected);
+         }
+      }
+   }
+
+   @Test
+   public void testSlidingWindow() throws Exception {
+      // add timestamps and expire old ones; the treap stays the window's size
+      final int window = 1000;
+      Treap<Integer> t = new Treap<>();
+      for (int now = 0; now < 100_000; now++) {
+         t.add(now);
+         if (now % 100 == 0) {
+            t.removeRange(Integer.MIN_VALUE, now - window);
+         }
+         assertTrue(t.size() <= window + 100);
+      }
+      assertTrue(Treap.isBST(t.root));
+      assertTrue(Treap.isHeap(t.root));
+      assertTrue(sizesConsistent(t.root));
+   }
+}